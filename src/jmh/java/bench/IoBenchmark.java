@@ -0,0 +1,81 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.MLP;
+import data.DataSetCache;
+import data.DigitDataLoader;
+
+// Dataset loading (parsing vs binary cache) and model save/load times
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class IoBenchmark {
+    private byte[] trainCsv;
+    private Path dir;
+    private DataSetCache cache;
+    private MLP model;
+    private String modelPath;
+
+    @Setup
+    public void setup() throws IOException {
+        try (InputStream is = DigitDataLoader.class.getResourceAsStream("/data/digits_train.csv")) {
+            trainCsv = is.readAllBytes();
+        }
+        dir = Files.createTempDirectory("jneural-bench");
+        cache = new DataSetCache(dir);
+        cache.load("digits_train.csv", trainCsv, DigitDataLoader.DIGIT_SCALE);
+        model = new MLP(new int[]{64, 64, 32, 10});
+        modelPath = dir.resolve("bench.model").toString();
+        model.saveModel(modelPath);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public DigitDataLoader.DataSet parseCsv() throws IOException {
+        return DigitDataLoader.load(new ByteArrayInputStream(trainCsv), DigitDataLoader.DIGIT_SCALE);
+    }
+
+    @Benchmark
+    public DigitDataLoader.DataSet cachedLoad() throws IOException {
+        return cache.load("digits_train.csv", trainCsv, DigitDataLoader.DIGIT_SCALE);
+    }
+
+    @Benchmark
+    public void saveModel() {
+        model.saveModel(modelPath);
+    }
+
+    @Benchmark
+    public MLP loadModel() {
+        model.loadModel(modelPath);
+        return model;
+    }
+}
@@ -0,0 +1,104 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.CompiledGraph;
+import core.InferenceModel;
+import core.MLP;
+import core.Tensor;
+import core.Value;
+import data.DigitDataLoader;
+
+// Forward and forward+backward latency of the 64-64-32-10 DigitRecognizer topology
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MLPBenchmark {
+    private MLP model;
+    private double[] x;
+    private int label;
+    private final double[] out = new double[10];
+    private CompiledGraph plan;
+    private InferenceModel int8;
+
+    @Setup
+    public void setup() throws Exception {
+        model = new MLP(new int[]{64, 64, 32, 10});
+        DigitDataLoader.DataSet data = DigitDataLoader.load("/data/digits_test.csv");
+        x = data.images[0];
+        label = data.labels[0];
+        plan = model.compile(logits -> Value.crossEntropy(logits, label));
+        int8 = model.quantize(Arrays.copyOf(data.images, 100));
+    }
+
+    @Benchmark
+    public List<Value> scalarForward() {
+        return model.forward(wrap(x));
+    }
+
+    @Benchmark
+    public Tensor tensorForward() {
+        return model.forward(Tensor.of(new double[][]{x}));
+    }
+
+    @Benchmark
+    public double[] predict() {
+        model.predict(x, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] predictInt8() {
+        int8.predict(x, out);
+        return out;
+    }
+
+    @Benchmark
+    public double scalarForwardBackward() {
+        Value loss = Value.crossEntropy(model.logits(wrap(x)), label);
+        model.zeroGrad();
+        loss.backward();
+        return loss.data;
+    }
+
+    @Benchmark
+    public double compiledForwardBackward() {
+        double loss = plan.forward(x, 0);
+        model.zeroGrad();
+        plan.backward();
+        return loss;
+    }
+
+    @Benchmark
+    public double tensorForwardBackward() {
+        Tensor loss = model.logits(Tensor.of(new double[][]{x})).crossEntropy(new int[]{label});
+        model.zeroGrad();
+        loss.backward();
+        return loss.item();
+    }
+
+    private static List<Value> wrap(double[] x) {
+        List<Value> inputs = new ArrayList<>(x.length);
+        for (double d : x) {
+            inputs.add(new Value(d));
+        }
+        return inputs;
+    }
+}
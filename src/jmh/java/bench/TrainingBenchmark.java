@@ -0,0 +1,61 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.MLP;
+import data.DigitDataLoader;
+import engine.Trainer;
+
+// Training throughput (samples per millisecond) of one Trainer.train epoch over a fixed subset
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TrainingBenchmark {
+    private static final int SAMPLES = 256;
+
+    @Param({"scalar", "tensor", "batch32"})
+    public String mode;
+
+    private Trainer trainer;
+    private double[][] X;
+    private int[] y;
+
+    @Setup
+    public void setup() throws Exception {
+        DigitDataLoader.DataSet data = DigitDataLoader.load("/data/digits_train.csv");
+        X = Arrays.copyOf(data.images, SAMPLES);
+        y = Arrays.copyOf(data.labels, SAMPLES);
+        trainer = new Trainer(new MLP(new int[]{64, 64, 32, 10}));
+        if (mode.equals("tensor")) {
+            trainer.setUseTensors(true);
+        } else if (mode.equals("batch32")) {
+            trainer.setBatchSize(32);
+        }
+        // The console listener prints per-epoch losses, keep them out of the benchmark output
+        trainer.clearListeners();
+        trainer.setStopOnKeypress(false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void trainEpoch() {
+        trainer.train(X, y, 0.001, 1, null, null, false, 0, 1);
+    }
+}
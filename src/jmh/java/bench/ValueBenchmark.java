@@ -0,0 +1,68 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import core.Value;
+
+// Scalar autograd costs: op throughput and backward (topological sort + backprop) vs graph size
+@State(Scope.Thread)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ValueBenchmark {
+    private static final int CHAIN = 64;
+
+    @Param({"100", "1000", "10000"})
+    public int graphSize;
+
+    private Value[] inputs;
+    private Value root;
+
+    @Setup
+    public void setup() {
+        inputs = new Value[CHAIN];
+        for (int i = 0; i < CHAIN; i++) {
+            inputs[i] = new Value(i * 0.01);
+        }
+        // Left-leaning add chain, the shape Neuron.forward produces
+        Value z = new Value(0.0);
+        for (int i = 0; i < graphSize / 2; i++) {
+            z = z.add(inputs[i % CHAIN].mul(inputs[(i + 1) % CHAIN]));
+        }
+        root = z;
+    }
+
+    // One mul + add per operation, like one term of a dot product
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @OperationsPerInvocation(CHAIN)
+    public Value mulAdd() {
+        Value z = new Value(0.0);
+        for (int i = 0; i < CHAIN; i++) {
+            z = z.add(inputs[i].mul(inputs[CHAIN - 1 - i]));
+        }
+        return z;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double backward() {
+        root.backward();
+        return inputs[0].grad;
+    }
+}
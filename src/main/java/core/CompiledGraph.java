@@ -0,0 +1,383 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Static execution plan traced once from a Value graph whose topology never changes (define once,
+ * execute many), see MLP.compile.
+ *
+ * Every node gets a slot in flat data and grad arrays and every internal node becomes one entry
+ * of a flat op list (opcode, output slot, operand slots). Running the plan is a loop over that
+ * list, so a training step builds no Value nodes or closures and allocates nothing. Slots are
+ * assigned so that the parameters of a neuron and the operands of a fused op are contiguous,
+ * which turns the dot products into Kernels calls over array ranges.
+ *
+ * Parameters stay owned by their Values: forward() reads their data and backward() adds the
+ * gradients into their grad, so optimizers keep working on MLP.parameterView(). The ops are the
+ * same as on Value, results can differ from the Value graph only in the last bits (summation order).
+ * A plan is not thread-safe, use one per thread.
+ */
+public final class CompiledGraph {
+    private static final int ADD = 0, SUB = 1, MUL = 2, DIV = 3, POW = 4, LOG = 5, EXP = 6, RELU = 7, SIGMOID = 8,
+            DOT = 9, DOT_RANGE = 10, SUM = 11, SUMSQ = 12, SUMEXP = 13, LOGSUMEXP = 14, CROSSENTROPY = 15, BCE = 16;
+
+    private final double[] data;
+    private final double[] grad;
+    // Parameters occupy slots [0, parameters.length), the inputs the numInputs slots after them
+    private final Value[] parameters;
+    private final int inputSlot;
+    private final int numInputs;
+    private final int root;
+
+    // Op k writes slot out[k] from the operand slots args[argStart[k] .. argStart[k] + argCount[k])
+    private final int[] code;
+    private final int[] out;
+    private final int[] argStart;
+    private final int[] argCount;
+    private final int[] args;
+    private final double[] param;
+
+    /**
+     * Traces the graph rooted at loss.
+     *
+     * @param loss Root of the graph, usually a scalar loss.
+     * @param inputs Leaves set from the input array on every forward().
+     * @param parameters Leaves read from (and whose gradients are written to) their Values, e.g. MLP.parameterView().
+     *                   Other leaves are constants fixed at compile time.
+     */
+    public static CompiledGraph compile(Value loss, List<Value> inputs, Value[] parameters) {
+        return new CompiledGraph(loss, inputs, parameters);
+    }
+
+    private CompiledGraph(Value loss, List<Value> inputs, Value[] parameters) {
+        this.parameters = parameters;
+        this.numInputs = inputs.size();
+        this.inputSlot = parameters.length;
+        Value[] order = Value.topologicalOrder(loss);
+
+        Map<Value, Integer> slots = new HashMap<>();
+        for (Value p : parameters) {
+            assign(slots, p);
+        }
+        for (Value in : inputs) {
+            if (slots.containsKey(in)) {
+                throw new IllegalArgumentException("Inputs must be distinct from each other and from the parameters.");
+            }
+            assign(slots, in);
+        }
+        // Operands of n-ary ops next to each other (e.g. the activations of a layer feeding the next one)
+        for (Value v : order) {
+            Value[] operands = v.operands();
+            if (operands.length > 2) {
+                for (Value o : operands) {
+                    assign(slots, o);
+                }
+            }
+        }
+        List<Value> internal = new ArrayList<>();
+        for (Value v : order) {
+            assign(slots, v);
+            if (v.operands().length > 0) {
+                internal.add(v);
+            }
+        }
+        this.data = new double[slots.size()];
+        this.grad = new double[slots.size()];
+        // Constant leaves keep their value from compile time
+        for (Map.Entry<Value, Integer> e : slots.entrySet()) {
+            data[e.getValue()] = e.getKey().data;
+        }
+        this.root = slots.get(loss);
+
+        int numOps = internal.size();
+        this.code = new int[numOps];
+        this.out = new int[numOps];
+        this.argStart = new int[numOps];
+        this.argCount = new int[numOps];
+        this.param = new double[numOps];
+        int[] args = new int[64];
+        int numArgs = 0;
+        for (int k = 0; k < numOps; k++) {
+            Value v = internal.get(k);
+            Value[] operands = v.operands();
+            int[] operandSlots = new int[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                operandSlots[i] = slots.get(operands[i]);
+            }
+            code[k] = opcode(v.op());
+            out[k] = slots.get(v);
+            param[k] = v.param();
+            if (code[k] == DOT) {
+                // [bias, a_0..a_n-1, b_0..b_n-1] with both halves contiguous becomes [bias, aStart, bStart]
+                int n = (operands.length - 1) / 2;
+                if (isRange(operandSlots, 1, n) && isRange(operandSlots, 1 + n, n)) {
+                    code[k] = DOT_RANGE;
+                    operandSlots = new int[]{operandSlots[0], operandSlots[1], operandSlots[1 + n], n};
+                }
+            }
+            if (numArgs + operandSlots.length > args.length) {
+                args = Arrays.copyOf(args, Math.max(2 * args.length, numArgs + operandSlots.length));
+            }
+            System.arraycopy(operandSlots, 0, args, numArgs, operandSlots.length);
+            argStart[k] = numArgs;
+            argCount[k] = operandSlots.length;
+            numArgs += operandSlots.length;
+        }
+        this.args = Arrays.copyOf(args, numArgs);
+    }
+
+    private static void assign(Map<Value, Integer> slots, Value v) {
+        slots.putIfAbsent(v, slots.size());
+    }
+    private static boolean isRange(int[] slots, int from, int n) {
+        for (int i = 1; i < n; i++) {
+            if (slots[from + i] != slots[from] + i) return false;
+        }
+        return true;
+    }
+    private static int opcode(String op) {
+        switch (op) {
+            case "+": return ADD;
+            case "-": return SUB;
+            case "*": return MUL;
+            case "/": return DIV;
+            case "pow": return POW;
+            case "log": return LOG;
+            case "exp": return EXP;
+            case "ReLU": return RELU;
+            case "sigmoid": return SIGMOID;
+            case "dot": return DOT;
+            case "sum": return SUM;
+            case "sumsq": return SUMSQ;
+            case "sumexp": return SUMEXP;
+            case "logsumexp": return LOGSUMEXP;
+            case "crossentropy": return CROSSENTROPY;
+            case "bce": return BCE;
+            default:
+                throw new IllegalArgumentException("Cannot compile op '" + op + "'");
+        }
+    }
+
+    /**
+     * Forward pass over the plan.
+     *
+     * @param input Input values, numInputs() of them starting at offset (e.g. a row of a flat batch).
+     * @return Data of the root.
+     */
+    public double forward(double[] input, int offset) {
+        for (int i = 0; i < parameters.length; i++) {
+            data[i] = parameters[i].data;
+        }
+        System.arraycopy(input, offset, data, inputSlot, numInputs);
+        for (int k = 0; k < code.length; k++) {
+            int a = argStart[k];
+            int n = argCount[k];
+            double result;
+            switch (code[k]) {
+                case ADD:
+                    result = data[args[a]] + data[args[a + 1]];
+                    break;
+                case SUB:
+                    result = data[args[a]] - data[args[a + 1]];
+                    break;
+                case MUL:
+                    result = data[args[a]] * data[args[a + 1]];
+                    break;
+                case DIV:
+                    if (data[args[a + 1]] == 0) {
+                        throw new ArithmeticException("Division by zero");
+                    }
+                    result = data[args[a]] / data[args[a + 1]];
+                    break;
+                case POW:
+                    result = Math.pow(data[args[a]], param[k]);
+                    break;
+                case LOG:
+                    result = Math.log(data[args[a]]);
+                    break;
+                case EXP:
+                    result = Math.exp(data[args[a]]);
+                    break;
+                case RELU:
+                    result = (data[args[a]] < 0) ? 0 : data[args[a]];
+                    break;
+                case SIGMOID:
+                    result = 1.0 / (1.0 + Math.exp(-data[args[a]]));
+                    break;
+                case DOT: {
+                    int half = (n - 1) / 2;
+                    result = data[args[a]];
+                    for (int i = 1; i <= half; i++) {
+                        result += data[args[a + i]] * data[args[a + i + half]];
+                    }
+                    break;
+                }
+                case DOT_RANGE:
+                    result = data[args[a]] + Kernels.INSTANCE.dot(data, args[a + 1], data, args[a + 2], args[a + 3]);
+                    break;
+                case SUM:
+                    result = 0.0;
+                    for (int i = a; i < a + n; i++) result += data[args[i]];
+                    break;
+                case SUMSQ:
+                    result = 0.0;
+                    for (int i = a; i < a + n; i++) result += data[args[i]] * data[args[i]];
+                    break;
+                case SUMEXP:
+                    result = 0.0;
+                    for (int i = a; i < a + n; i++) result += Math.exp(data[args[i]]);
+                    break;
+                case LOGSUMEXP:
+                    result = logSumExp(a, n);
+                    break;
+                case CROSSENTROPY:
+                    result = logSumExp(a, n) - data[args[a + (int) param[k]]];
+                    break;
+                case BCE: {
+                    double z = data[args[a]];
+                    result = Math.max(z, 0) - z * param[k] + Math.log1p(Math.exp(-Math.abs(z)));
+                    break;
+                }
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[k]);
+            }
+            data[out[k]] = result;
+        }
+        return data[root];
+    }
+    private double logSumExp(int a, int n) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = a; i < a + n; i++) max = Math.max(max, data[args[i]]);
+        double total = 0.0;
+        for (int i = a; i < a + n; i++) total += Math.exp(data[args[i]] - max);
+        return max + Math.log(total);
+    }
+
+    /**
+     * Backward pass from the root over the data of the last forward(). The parameter gradients
+     * are added to the grad of the parameter Values, so they still need zeroing by the caller.
+     */
+    public void backward() {
+        Arrays.fill(grad, 0.0);
+        grad[root] = 1.0;
+        for (int k = code.length - 1; k >= 0; k--) {
+            double g = grad[out[k]];
+            if (g == 0.0) continue;
+            int a = argStart[k];
+            int n = argCount[k];
+            switch (code[k]) {
+                case ADD:
+                    grad[args[a]] += g;
+                    grad[args[a + 1]] += g;
+                    break;
+                case SUB:
+                    grad[args[a]] += g;
+                    grad[args[a + 1]] -= g;
+                    break;
+                case MUL:
+                    grad[args[a]] += data[args[a + 1]] * g;
+                    grad[args[a + 1]] += data[args[a]] * g;
+                    break;
+                case DIV: {
+                    double x = data[args[a]], y = data[args[a + 1]];
+                    grad[args[a]] += (1.0 / y) * g;
+                    grad[args[a + 1]] += (-x / (y * y)) * g;
+                    break;
+                }
+                case POW:
+                    grad[args[a]] += (param[k] * Math.pow(data[args[a]], param[k] - 1)) * g;
+                    break;
+                case LOG:
+                    grad[args[a]] += (1.0 / data[args[a]]) * g;
+                    break;
+                case EXP:
+                    grad[args[a]] += data[out[k]] * g;
+                    break;
+                case RELU:
+                    if (data[out[k]] > 0) grad[args[a]] += g;
+                    break;
+                case SIGMOID: {
+                    double s = data[out[k]];
+                    grad[args[a]] += s * (1 - s) * g;
+                    break;
+                }
+                case DOT: {
+                    int half = (n - 1) / 2;
+                    grad[args[a]] += g;
+                    for (int i = 1; i <= half; i++) {
+                        int x = args[a + i], y = args[a + i + half];
+                        grad[x] += data[y] * g;
+                        grad[y] += data[x] * g;
+                    }
+                    break;
+                }
+                case DOT_RANGE: {
+                    int x = args[a + 1], y = args[a + 2], len = args[a + 3];
+                    grad[args[a]] += g;
+                    for (int i = 0; i < len; i++) {
+                        grad[x + i] += data[y + i] * g;
+                        grad[y + i] += data[x + i] * g;
+                    }
+                    break;
+                }
+                case SUM:
+                    for (int i = a; i < a + n; i++) grad[args[i]] += g;
+                    break;
+                case SUMSQ:
+                    for (int i = a; i < a + n; i++) grad[args[i]] += 2.0 * data[args[i]] * g;
+                    break;
+                case SUMEXP:
+                    for (int i = a; i < a + n; i++) grad[args[i]] += Math.exp(data[args[i]]) * g;
+                    break;
+                case LOGSUMEXP: {
+                    // d/dv_i = softmax(v)_i = exp(v_i - logsumexp)
+                    double lse = data[out[k]];
+                    for (int i = a; i < a + n; i++) grad[args[i]] += Math.exp(data[args[i]] - lse) * g;
+                    break;
+                }
+                case CROSSENTROPY: {
+                    // softmax(logits) - onehot(target)
+                    double lse = logSumExp(a, n);
+                    int target = (int) param[k];
+                    for (int i = 0; i < n; i++) {
+                        double softmax = Math.exp(data[args[a + i]] - lse);
+                        grad[args[a + i]] += (softmax - ((i == target) ? 1.0 : 0.0)) * g;
+                    }
+                    break;
+                }
+                case BCE:
+                    grad[args[a]] += (1.0 / (1.0 + Math.exp(-data[args[a]])) - param[k]) * g;
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown opcode " + code[k]);
+            }
+        }
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i].grad += grad[i];
+        }
+    }
+
+    // Data of the root after the last forward()
+    public double value() {
+        return data[root];
+    }
+    // Data of operand i of the root after the last forward(), e.g. logit i of a fused loss
+    public double rootOperand(int i) {
+        int k = code.length - 1;
+        if (i < 0 || i >= argCount[k]) {
+            throw new IndexOutOfBoundsException("Root has " + argCount[k] + " operands, got index " + i);
+        }
+        return data[args[argStart[k] + i]];
+    }
+    public int numInputs() {
+        return numInputs;
+    }
+    // Number of ops executed per forward (the internal nodes of the traced graph)
+    public int size() {
+        return code.length;
+    }
+}
@@ -0,0 +1,372 @@
+package core;
+
+/**
+ * Immutable, graph-free snapshot of an MLP for inference.
+ *
+ * Weights are copied into flat primitive arrays (neuron-major, so every neuron is one contiguous
+ * dot product) and the forward pass runs over per-thread scratch buffers, so predict() builds no
+ * Value nodes and allocates nothing after the first call on a thread. Safe to share between threads.
+ *
+ * A FLOAT32 snapshot stores weights and activations as floats, halving the memory footprint and
+ * bandwidth of the forward pass; only the final probabilities are widened back to double.
+ *
+ * An INT8 snapshot (see Quantizer) stores int8 weights with one float scale per neuron and runs
+ * every layer as an int8 dot product accumulated in an int. Hidden activations are requantized to
+ * int8 with the calibrated scale of the next layer, the output logits are the only values
+ * dequantized before the softmax/sigmoid.
+ */
+public final class InferenceModel {
+    private final int[] layerSizes;
+    private final ModelFile.DType dtype;
+    // weights[l][j * numInputs + i] is the weight of input i for neuron j of layer l (null for FLOAT32)
+    private final double[][] weights;
+    private final double[][] biases;
+    // Same layout in single precision (null for FLOAT64)
+    private final float[][] floatWeights;
+    private final float[][] floatBiases;
+    // Same layout in int8, biases in the scale of the accumulator (null unless INT8)
+    private final byte[][] int8Weights;
+    private final int[][] int8Biases;
+    // Per layer: scale of its input; per neuron: accumulator to the next layer's int8 input (output: to the logit)
+    private final float[] activationScales;
+    private final double[][] multipliers;
+    private final ThreadLocal<double[][]> scratch;
+    private final ThreadLocal<float[][]> floatScratch;
+    private final ThreadLocal<byte[][]> int8Scratch;
+
+    /**
+     * @param layerSizes Layer sizes as passed to the MLP constructor.
+     * @param parameters Parameters in MLP.parameters() order (per neuron: its weights, then its bias).
+     */
+    public InferenceModel(int[] layerSizes, double[] parameters) {
+        this(layerSizes, parameters, ModelFile.DType.FLOAT64);
+    }
+
+    /**
+     * @param dtype Storage precision of the weights and activations, FLOAT32 rounds the parameters.
+     *              INT8 needs calibrated activation scales, see the constructor below.
+     */
+    public InferenceModel(int[] layerSizes, double[] parameters, ModelFile.DType dtype) {
+        this(layerSizes, parameters, dtype, null);
+    }
+
+    /**
+     * INT8 snapshot.
+     *
+     * @param activationScales Scale of the input of every layer, from Quantizer.calibrate().
+     */
+    public InferenceModel(int[] layerSizes, double[] parameters, float[] activationScales) {
+        this(layerSizes, parameters, ModelFile.DType.INT8, activationScales);
+    }
+
+    private InferenceModel(int[] layerSizes, double[] parameters, ModelFile.DType dtype, float[] activationScales) {
+        if (dtype == ModelFile.DType.INT8 && (activationScales == null || activationScales.length != layerSizes.length - 1)) {
+            throw new IllegalArgumentException("An INT8 snapshot needs one calibrated activation scale per layer, see Quantizer.");
+        }
+        this.layerSizes = layerSizes.clone();
+        this.dtype = dtype;
+        double[][] weights = new double[layerSizes.length - 1][];
+        double[][] biases = new double[layerSizes.length - 1][];
+        int k = 0;
+        int maxWidth = 0;
+        for (int l = 0; l < weights.length; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            weights[l] = new double[numInputs * numNeurons];
+            biases[l] = new double[numNeurons];
+            for (int j = 0; j < numNeurons; j++) {
+                if (k + numInputs + 1 > parameters.length) {
+                    throw new IllegalArgumentException("Expected more than " + parameters.length + " parameters for the given layer sizes.");
+                }
+                System.arraycopy(parameters, k, weights[l], j * numInputs, numInputs);
+                k += numInputs;
+                biases[l][j] = parameters[k++];
+            }
+            maxWidth = Math.max(maxWidth, numNeurons);
+        }
+        if (k != parameters.length) {
+            throw new IllegalArgumentException("Expected " + k + " parameters, got " + parameters.length);
+        }
+        int width = maxWidth;
+        int numInputs = layerSizes[0];
+        double[][] doubleWeights = null, doubleBiases = null;
+        float[][] floatWeights = null, floatBiases = null;
+        byte[][] int8Weights = null;
+        int[][] int8Biases = null;
+        double[][] multipliers = null;
+        if (dtype == ModelFile.DType.FLOAT32) {
+            floatWeights = new float[weights.length][];
+            floatBiases = new float[weights.length][];
+            for (int l = 0; l < weights.length; l++) {
+                floatWeights[l] = toFloat(weights[l]);
+                floatBiases[l] = toFloat(biases[l]);
+            }
+        } else if (dtype == ModelFile.DType.INT8) {
+            int8Weights = new byte[weights.length][];
+            int8Biases = new int[weights.length][];
+            multipliers = new double[weights.length][];
+            int last = weights.length - 1;
+            for (int l = 0; l <= last; l++) {
+                int n = layerSizes[l];
+                int8Weights[l] = new byte[weights[l].length];
+                int8Biases[l] = new int[biases[l].length];
+                multipliers[l] = new double[biases[l].length];
+                for (int j = 0; j < biases[l].length; j++) {
+                    float scale = Quantizer.weightScale(weights[l], j * n, n);
+                    for (int i = j * n; i < (j + 1) * n; i++) {
+                        int8Weights[l][i] = Quantizer.quantize(weights[l][i], scale);
+                    }
+                    // Biases are stored as floats in model files, round them the same way here
+                    double accumulatorScale = (double) scale * activationScales[l];
+                    int8Biases[l][j] = Quantizer.quantizeBias((float) biases[l][j], accumulatorScale);
+                    multipliers[l][j] = (l == last) ? accumulatorScale : accumulatorScale / activationScales[l + 1];
+                }
+            }
+        } else {
+            doubleWeights = weights;
+            doubleBiases = biases;
+        }
+        this.weights = doubleWeights;
+        this.biases = doubleBiases;
+        this.floatWeights = floatWeights;
+        this.floatBiases = floatBiases;
+        this.int8Weights = int8Weights;
+        this.int8Biases = int8Biases;
+        this.activationScales = (activationScales != null) ? activationScales.clone() : null;
+        this.multipliers = multipliers;
+        this.scratch = (dtype == ModelFile.DType.FLOAT64) ? ThreadLocal.withInitial(() -> new double[][]{new double[width], new double[width]}) : null;
+        this.floatScratch = (dtype == ModelFile.DType.FLOAT32) ? ThreadLocal.withInitial(() -> new float[][]{new float[numInputs], new float[width], new float[width]}) : null;
+        this.int8Scratch = (dtype == ModelFile.DType.INT8) ? ThreadLocal.withInitial(() -> new byte[][]{new byte[numInputs], new byte[width], new byte[width]}) : null;
+    }
+
+    /**
+     * Forward pass without an autograd graph.
+     *
+     * @param in Input features (numInputs values).
+     * @param out Receives the softmax probabilities, or the sigmoid output for a single output neuron.
+     */
+    public void predict(double[] in, double[] out) {
+        logits(in, out);
+        probabilities(out, numOutputs());
+    }
+
+    /**
+     * Forward pass up to the raw output logits, e.g. for a numerically stable loss (probabilities
+     * that underflow to 0 or round to 1 would make a log-likelihood infinite).
+     *
+     * @param out Receives the numOutputs logits.
+     */
+    public void logits(double[] in, double[] out) {
+        if (in.length < numInputs() || out.length < numOutputs()) {
+            throw new IllegalArgumentException("Expected " + numInputs() + " inputs and room for " + numOutputs() + " outputs.");
+        }
+        if (floatWeights != null) {
+            forwardFloat(in, out);
+        } else if (int8Weights != null) {
+            forwardInt8(in, out);
+        } else {
+            forward(in, out);
+        }
+    }
+
+    // Logits to probabilities in place: softmax, or the sigmoid for a single output neuron
+    public static void probabilities(double[] logits, int numOutputs) {
+        if (numOutputs > 1) {
+            softmax(logits, numOutputs);
+        } else {
+            logits[0] = 1.0 / (1.0 + Math.exp(-logits[0]));
+        }
+    }
+    // Forward passes up to the output logits, written into out
+    private void forward(double[] in, double[] out) {
+        double[][] buffers = scratch.get();
+        double[] current = in;
+        int last = weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            double[] w = weights[l];
+            double[] next = (l == last) ? out : buffers[l % 2];
+            for (int j = 0; j < numNeurons; j++) {
+                double z = biases[l][j] + Kernels.INSTANCE.dot(w, j * numInputs, current, 0, numInputs);
+                // ReLU in hidden layers, raw logits in the output layer
+                next[j] = (l == last || z > 0) ? z : 0;
+            }
+            current = next;
+        }
+    }
+    private void forwardFloat(double[] in, double[] out) {
+        float[][] buffers = floatScratch.get();
+        float[] current = buffers[0];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = (float) in[i];
+        }
+        int last = floatWeights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            float[] w = floatWeights[l];
+            float[] next = buffers[1 + l % 2];
+            for (int j = 0; j < numNeurons; j++) {
+                float z = floatBiases[l][j] + Kernels.INSTANCE.dot(w, j * numInputs, current, 0, numInputs);
+                // ReLU in hidden layers, raw logits in the output layer
+                next[j] = (l == last || z > 0) ? z : 0;
+            }
+            current = next;
+        }
+        for (int j = 0; j < numOutputs(); j++) {
+            out[j] = current[j];
+        }
+    }
+
+    private void forwardInt8(double[] in, double[] out) {
+        byte[][] buffers = int8Scratch.get();
+        byte[] current = buffers[0];
+        for (int i = 0; i < current.length; i++) {
+            current[i] = Quantizer.quantize(in[i], activationScales[0]);
+        }
+        int last = int8Weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            byte[] w = int8Weights[l];
+            byte[] next = buffers[1 + l % 2];
+            for (int j = 0; j < numNeurons; j++) {
+                int acc = int8Biases[l][j] + Kernels.INSTANCE.dot(w, j * numInputs, current, 0, numInputs);
+                if (l == last) {
+                    // Dequantized logits
+                    out[j] = acc * multipliers[l][j];
+                } else {
+                    // ReLU, then requantized into the scale of the next layer's input
+                    next[j] = (acc > 0) ? (byte) Math.min(Quantizer.QMAX, Math.round(acc * multipliers[l][j])) : 0;
+                }
+            }
+            current = next;
+        }
+    }
+    // Raises maxAbs[l] to the largest |value| of the input of layer l for this sample (float64 only)
+    void observeActivations(double[] in, double[] maxAbs) {
+        double[][] buffers = scratch.get();
+        double[] current = in;
+        for (int l = 0; l < weights.length; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            for (int i = 0; i < numInputs; i++) {
+                maxAbs[l] = Math.max(maxAbs[l], Math.abs(current[i]));
+            }
+            if (l == weights.length - 1) {
+                break;
+            }
+            double[] next = buffers[l % 2];
+            for (int j = 0; j < numNeurons; j++) {
+                double z = biases[l][j] + Kernels.INSTANCE.dot(weights[l], j * numInputs, current, 0, numInputs);
+                next[j] = (z > 0) ? z : 0;
+            }
+            current = next;
+        }
+    }
+
+    /**
+     * Batched forward pass: every weight row is loaded once and applied to all samples of the batch.
+     *
+     * @param in Input rows, one sample per row.
+     * @param out Output rows receiving the probabilities, one per input row.
+     */
+    public void predictBatch(double[][] in, double[][] out) {
+        int rows = in.length;
+        if (out.length < rows) {
+            throw new IllegalArgumentException("Expected " + rows + " output rows, got " + out.length);
+        }
+        if (floatWeights != null || int8Weights != null) {
+            // Reduced precision paths, one sample at a time over the float or int8 snapshot
+            for (int r = 0; r < rows; r++) {
+                predict(in[r], out[r]);
+            }
+            return;
+        }
+        double[][] current = in;
+        int last = weights.length - 1;
+        for (int l = 0; l <= last; l++) {
+            int numInputs = layerSizes[l], numNeurons = layerSizes[l + 1];
+            double[] w = weights[l];
+            double[][] next = (l == last) ? out : new double[rows][numNeurons];
+            for (int j = 0; j < numNeurons; j++) {
+                int offset = j * numInputs;
+                for (int r = 0; r < rows; r++) {
+                    double z = biases[l][j] + Kernels.INSTANCE.dot(w, offset, current[r], 0, numInputs);
+                    // ReLU in hidden layers, raw logits in the output layer
+                    next[r][j] = (l == last || z > 0) ? z : 0;
+                }
+            }
+            current = next;
+        }
+        int numOutputs = numOutputs();
+        for (int r = 0; r < rows; r++) {
+            probabilities(out[r], numOutputs);
+        }
+    }
+
+    // Index of the most probable class (or 0/1 thresholded at 0.5 for a single output neuron)
+    public static int argmax(double[] out, int numOutputs) {
+        if (numOutputs == 1) {
+            return out[0] >= 0.5 ? 1 : 0;
+        }
+        int maxIdx = 0;
+        for (int j = 1; j < numOutputs; j++) {
+            if (out[j] > out[maxIdx]) {
+                maxIdx = j;
+            }
+        }
+        return maxIdx;
+    }
+
+    // In-place softmax shifted by the maximum logit for numerical stability
+    private static void softmax(double[] logits, int n) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int j = 0; j < n; j++) {
+            max = Math.max(max, logits[j]);
+        }
+        double sum = 0.0;
+        for (int j = 0; j < n; j++) {
+            logits[j] = Math.exp(logits[j] - max);
+            sum += logits[j];
+        }
+        for (int j = 0; j < n; j++) {
+            logits[j] /= sum;
+        }
+    }
+
+    private static float[] toFloat(double[] values) {
+        float[] floats = new float[values.length];
+        for (int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    public ModelFile.DType dtype() {
+        return dtype;
+    }
+    // Calibrated input scale of every layer, null unless INT8
+    public float[] activationScales() {
+        return (activationScales != null) ? activationScales.clone() : null;
+    }
+    // Bytes of the stored weights and biases (plus scales for INT8)
+    public long parameterBytes() {
+        long bytes = 0;
+        for (int l = 0; l + 1 < layerSizes.length; l++) {
+            long numWeights = (long) layerSizes[l] * layerSizes[l + 1];
+            int numNeurons = layerSizes[l + 1];
+            if (dtype == ModelFile.DType.INT8) {
+                bytes += numWeights + (long) numNeurons * (Float.BYTES + Integer.BYTES) + Float.BYTES;
+            } else {
+                bytes += (numWeights + numNeurons) * dtype.bytes;
+            }
+        }
+        return bytes;
+    }
+    public int numInputs() {
+        return layerSizes[0];
+    }
+    public int numOutputs() {
+        return layerSizes[layerSizes.length - 1];
+    }
+    public int[] layerSizes() {
+        return layerSizes.clone();
+    }
+}
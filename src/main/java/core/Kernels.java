@@ -0,0 +1,172 @@
+package core;
+
+/**
+ * Dense matrix and element-wise kernels behind the Tensor ops and InferenceModel.
+ *
+ * All matrices are contiguous row-major arrays. The SIMD implementation (VectorKernels, built on
+ * jdk.incubator.vector) is used when the module is enabled with --add-modules jdk.incubator.vector,
+ * otherwise the scalar loops below. Set -Djneural.kernels=scalar or =vector to force a choice.
+ */
+public abstract class Kernels {
+    // Rows/columns per cache block of the GEMM kernels (a 64 x 64 block of doubles is 32 KB)
+    static final int BLOCK = 64;
+
+    static final Kernels INSTANCE = select();
+
+    // Name of the kernels in use, "vector" or "scalar"
+    public static String active() {
+        return INSTANCE.name();
+    }
+
+    private static Kernels select() {
+        String choice = System.getProperty("jneural.kernels", "auto");
+        if (!choice.equals("scalar") && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernels) Class.forName("core.VectorKernels").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                System.err.println("Vector kernels unavailable, using scalar kernels: " + e);
+            }
+        } else if (choice.equals("vector")) {
+            System.err.println("jneural.kernels=vector requires --add-modules jdk.incubator.vector, using scalar kernels");
+        }
+        return new Scalar();
+    }
+
+    abstract String name();
+
+    // c[n, m] += a[n, k] * b[k, m]
+    abstract void gemm(double[] a, double[] b, double[] c, int n, int k, int m);
+    // c[k, m] += a[n, k]^T * b[n, m] (weight gradient of a matmul)
+    abstract void gemmTransA(double[] a, double[] b, double[] c, int n, int k, int m);
+    // c[n, k] += a[n, m] * b[k, m]^T (input gradient of a matmul)
+    abstract void gemmTransB(double[] a, double[] b, double[] c, int n, int k, int m);
+
+    // sum_i a[aOffset + i] * b[bOffset + i] for i < length
+    abstract double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+    abstract float dot(float[] a, int aOffset, float[] b, int bOffset, int length);
+    // int8 products accumulated in an int (quantized inference)
+    abstract int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length);
+
+    // out[i, j] = x[i, j] + bias[j] over an [n, m] matrix
+    abstract void addBias(double[] x, double[] bias, double[] out, int n, int m);
+    abstract void relu(double[] x, double[] out);
+    // grad[i] += gradOut[i] where out[i] > 0
+    abstract void reluBackward(double[] out, double[] gradOut, double[] grad);
+    abstract void exp(double[] x, double[] out);
+
+    static final class Scalar extends Kernels {
+        @Override
+        String name() {
+            return "scalar";
+        }
+
+        @Override
+        void gemm(double[] a, double[] b, double[] c, int n, int k, int m) {
+            for (int p0 = 0; p0 < k; p0 += BLOCK) {
+                int p1 = Math.min(p0 + BLOCK, k);
+                for (int j0 = 0; j0 < m; j0 += BLOCK) {
+                    int j1 = Math.min(j0 + BLOCK, m);
+                    for (int i = 0; i < n; i++) {
+                        int cRow = i * m;
+                        for (int p = p0; p < p1; p++) {
+                            double av = a[i * k + p];
+                            if (av == 0.0) continue;
+                            int bRow = p * m;
+                            for (int j = j0; j < j1; j++) {
+                                c[cRow + j] += av * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        void gemmTransA(double[] a, double[] b, double[] c, int n, int k, int m) {
+            for (int p0 = 0; p0 < k; p0 += BLOCK) {
+                int p1 = Math.min(p0 + BLOCK, k);
+                for (int j0 = 0; j0 < m; j0 += BLOCK) {
+                    int j1 = Math.min(j0 + BLOCK, m);
+                    for (int i = 0; i < n; i++) {
+                        int bRow = i * m;
+                        for (int p = p0; p < p1; p++) {
+                            double av = a[i * k + p];
+                            if (av == 0.0) continue;
+                            int cRow = p * m;
+                            for (int j = j0; j < j1; j++) {
+                                c[cRow + j] += av * b[bRow + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        void gemmTransB(double[] a, double[] b, double[] c, int n, int k, int m) {
+            for (int i0 = 0; i0 < n; i0 += BLOCK) {
+                int i1 = Math.min(i0 + BLOCK, n);
+                for (int p0 = 0; p0 < k; p0 += BLOCK) {
+                    int p1 = Math.min(p0 + BLOCK, k);
+                    for (int i = i0; i < i1; i++) {
+                        for (int p = p0; p < p1; p++) {
+                            c[i * k + p] += dot(a, i * m, b, p * m, m);
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+            double sum = 0.0;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+        @Override
+        float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+            float sum = 0.0f;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+        @Override
+        int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+            int sum = 0;
+            for (int i = 0; i < length; i++) {
+                sum += a[aOffset + i] * b[bOffset + i];
+            }
+            return sum;
+        }
+
+        @Override
+        void addBias(double[] x, double[] bias, double[] out, int n, int m) {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    out[i * m + j] = x[i * m + j] + bias[j];
+                }
+            }
+        }
+        @Override
+        void relu(double[] x, double[] out) {
+            for (int i = 0; i < x.length; i++) {
+                out[i] = (x[i] < 0) ? 0 : x[i];
+            }
+        }
+        @Override
+        void reluBackward(double[] out, double[] gradOut, double[] grad) {
+            for (int i = 0; i < out.length; i++) {
+                if (out[i] > 0) grad[i] += gradOut[i];
+            }
+        }
+        @Override
+        void exp(double[] x, double[] out) {
+            for (int i = 0; i < x.length; i++) {
+                out[i] = Math.exp(x[i]);
+            }
+        }
+    }
+}
@@ -5,12 +5,26 @@ import java.util.List;
 
 public class Layer {
     private List<Neuron> neurons;
-    
+    // Parameters laid out for the tensor path: weights as [numInputs, numNeurons], biases as [1, numNeurons]
+    private final Value[] weightView;
+    private final Value[] biasView;
+    private final int numInputs;
+
     public Layer(int numInputs, int numNeurons) {
+        this.numInputs = numInputs;
         this.neurons = new ArrayList<>(numNeurons);
         for (int i = 0; i < numNeurons; i++) {
             neurons.add(new Neuron(numInputs));
         }
+        this.weightView = new Value[numInputs * numNeurons];
+        this.biasView = new Value[numNeurons];
+        for (int j = 0; j < numNeurons; j++) {
+            List<Value> w = neurons.get(j).weights();
+            for (int i = 0; i < numInputs; i++) {
+                weightView[i * numNeurons + j] = w.get(i);
+            }
+            biasView[j] = neurons.get(j).bias();
+        }
     }
 
     public List<Value> forward(List<Value> inputs, Boolean isOutputLayer) {
@@ -21,14 +35,12 @@ public class Layer {
         if (isOutputLayer) {
             // If multiple outputs, apply softmax, else apply sigmoid activation function
             if (outputs.size() > 1) {
-                Value sum = new Value(0.0);
-                for (Value o : outputs) {
-                    sum = sum.add(o.exp());
-                }
+                // exp(o_i - logsumexp(o)) cannot overflow, unlike exp(o_i) / sum_j exp(o_j)
+                Value logSum = Value.logSumExp(outputs);
                 
                 List<Value> outputsSoftmax = new ArrayList<>();
                 for (Value o : outputs) {
-                    outputsSoftmax.add(o.exp().div(sum));
+                    outputsSoftmax.add(o.sub(logSum).exp());
                 }
                 return outputsSoftmax;
             } else {
@@ -38,6 +50,67 @@ public class Layer {
         return outputs;
     }
 
+    // Raw pre-activations of the neurons, i.e. the logits when this is the output layer
+    public List<Value> logits(List<Value> inputs) {
+        List<Value> outputs = new ArrayList<>();
+        for (int i = 0; i < neurons.size(); i++) {
+            outputs.add(neurons.get(i).forward(inputs, true));
+        }
+        return outputs;
+    }
+
+    // Tensor path: the whole layer is a single matmul + bias node over a [batch, numInputs] input
+    public Tensor forward(Tensor inputs, boolean isOutputLayer) {
+        return forward(inputs, weightTensor(), biasTensor(), isOutputLayer);
+    }
+
+    // Tensor path over explicit parameter tensors (e.g. per-thread copies in data-parallel training)
+    public Tensor forward(Tensor inputs, Tensor weights, Tensor bias, boolean isOutputLayer) {
+        Tensor z = logits(inputs, weights, bias);
+        if (isOutputLayer) {
+            // Softmax for multiple outputs, sigmoid for a single output
+            return (neurons.size() > 1) ? z.softmax() : z.sigmoid();
+        }
+        return z.relu();
+    }
+
+    public Tensor logits(Tensor inputs, Tensor weights, Tensor bias) {
+        return inputs.matmul(weights).addBias(bias);
+    }
+
+    // Weights as a [numInputs, numNeurons] tensor whose gradients flow back into the Values
+    public Tensor weightTensor() {
+        return Tensor.fromValues(weightView, numInputs, neurons.size());
+    }
+    public Tensor biasTensor() {
+        return Tensor.fromValues(biasView, 1, neurons.size());
+    }
+
+    // The parameter Values in the weightTensor()/biasTensor() layout, shared without copying
+    Value[] weightView() {
+        return weightView;
+    }
+    Value[] biasView() {
+        return biasView;
+    }
+
+    // Adds the gradients of detached weight/bias tensors into the grad of the matching Values
+    public void accumulateGrad(Tensor weights, Tensor bias) {
+        for (int k = 0; k < weightView.length; k++) {
+            weightView[k].grad += weights.grad[k];
+        }
+        for (int j = 0; j < biasView.length; j++) {
+            biasView[j].grad += bias.grad[j];
+        }
+    }
+
+    public int numInputs() {
+        return numInputs;
+    }
+    public int numNeurons() {
+        return neurons.size();
+    }
+
     public List<Value> parameters() {
         List<Value> params = new ArrayList<>();
         for (Neuron neuron : neurons) {
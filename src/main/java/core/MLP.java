@@ -1,21 +1,41 @@
 package core;
 
 import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Function;
 
 public class MLP {
     List<Layer> layers;
+    private final int[] layerSizes;
+    // All parameters in parameters() order, built once since the topology never changes
+    private final Value[] parameterView;
+    // The weights alone (no biases), e.g. for weight decay
+    private final Value[] weightView;
+    // Snapshot used by predict(), rebuilt lazily after the parameters change
+    private volatile InferenceModel inference;
 
     public MLP(int[] layerSizes) {
+        this.layerSizes = layerSizes.clone();
         this.layers = new ArrayList<>(layerSizes.length);
         for(int i = 0; i < layerSizes.length - 1; i++) {
             layers.add(new Layer(layerSizes[i], layerSizes[i + 1]));
         }
+        List<Value> params = new ArrayList<>();
+        for (Layer layer : layers) {
+            params.addAll(layer.parameters());
+        }
+        this.parameterView = params.toArray(new Value[0]);
+        List<Value> weights = new ArrayList<>();
+        for (Layer layer : layers) {
+            weights.addAll(layer.weights());
+        }
+        this.weightView = weights.toArray(new Value[0]);
     }
 
     public List<Value> forward(List<Value> inputs) {
@@ -27,47 +47,211 @@ public class MLP {
         return outputs;
     }
 
-    public List<Value> parameters() {
-        List<Value> params = new ArrayList<>();
-        for (Layer layer : layers) {
-            params.addAll(layer.parameters());
+    // Tensor path: inputs is a [batch, numInputs] matrix, output is [batch, numOutputs]
+    public Tensor forward(Tensor inputs) {
+        Tensor outputs = inputs;
+        for (int i = 0; i < layers.size(); i++) {
+            boolean isOutputLayer = (i == layers.size() - 1);
+            outputs = layers.get(i).forward(outputs, isOutputLayer);
         }
-        return params;
+        return outputs;
     }
-    public List<Value> weights() {
-        List<Value> weights = new ArrayList<>();
+
+    // Tensor path over explicit parameter tensors, laid out as returned by parameterTensors()
+    public Tensor forward(Tensor inputs, List<Tensor> parameters) {
+        Tensor outputs = inputs;
+        for (int i = 0; i < layers.size(); i++) {
+            boolean isOutputLayer = (i == layers.size() - 1);
+            outputs = layers.get(i).forward(outputs, parameters.get(2 * i), parameters.get(2 * i + 1), isOutputLayer);
+        }
+        return outputs;
+    }
+
+    // Raw output-layer logits (before softmax/sigmoid), as expected by the fused loss functions
+    public List<Value> logits(List<Value> inputs) {
+        List<Value> outputs = inputs;
+        int last = layers.size() - 1;
+        for (int i = 0; i < last; i++) {
+            outputs = layers.get(i).forward(outputs, false);
+        }
+        return layers.get(last).logits(outputs);
+    }
+    public Tensor logits(Tensor inputs) {
+        Tensor outputs = inputs;
+        int last = layers.size() - 1;
+        for (int i = 0; i < last; i++) {
+            outputs = layers.get(i).forward(outputs, false);
+        }
+        Layer output = layers.get(last);
+        return output.logits(outputs, output.weightTensor(), output.biasTensor());
+    }
+    public Tensor logits(Tensor inputs, List<Tensor> parameters) {
+        Tensor outputs = inputs;
+        int last = layers.size() - 1;
+        for (int i = 0; i < last; i++) {
+            outputs = layers.get(i).forward(outputs, parameters.get(2 * i), parameters.get(2 * i + 1), false);
+        }
+        return layers.get(last).logits(outputs, parameters.get(2 * last), parameters.get(2 * last + 1));
+    }
+
+    /**
+     * Traces the forward pass plus a loss once into a static plan that replays forward and backward
+     * for new inputs without building Value graphs (see CompiledGraph).
+     *
+     * @param loss Builds the loss from the raw output logits, e.g. logits -> Value.crossEntropy(logits, label).
+     */
+    public CompiledGraph compile(Function<List<Value>, Value> loss) {
+        List<Value> inputs = new ArrayList<>(layerSizes[0]);
+        for (int i = 0; i < layerSizes[0]; i++) {
+            inputs.add(new Value(0.0));
+        }
+        return CompiledGraph.compile(loss.apply(logits(inputs)), inputs, parameterView);
+    }
+
+    // Snapshot of the parameters as leaf tensors [W0, b0, W1, b1, ...], detached from the Values
+    public List<Tensor> parameterTensors() {
+        List<Tensor> tensors = new ArrayList<>(2 * layers.size());
         for (Layer layer : layers) {
-            weights.addAll(layer.weights());
+            tensors.add(layer.weightTensor().detach());
+            tensors.add(layer.biasTensor().detach());
+        }
+        return tensors;
+    }
+    // Adds the gradients of tensors laid out as in parameterTensors() into the parameter Values
+    public void accumulateGrad(List<Tensor> parameters) {
+        for (int i = 0; i < layers.size(); i++) {
+            layers.get(i).accumulateGrad(parameters.get(2 * i), parameters.get(2 * i + 1));
+        }
+    }
+
+    /**
+     * Inference-only forward pass over flat weight arrays, without building an autograd graph.
+     * Does not allocate once the snapshot is built; call parametersChanged() after modifying
+     * parameter data outside of Trainer or loadModel.
+     *
+     * @param in Input features.
+     * @param out Receives the output probabilities (softmax, or sigmoid for a single output).
+     */
+    public void predict(double[] in, double[] out) {
+        InferenceModel snapshot = inference;
+        if (snapshot == null) {
+            snapshot = freeze();
+            inference = snapshot;
         }
-        return weights;
+        snapshot.predict(in, out);
+    }
+
+    // Immutable copy of the current parameters for graph-free (and thread-safe) inference
+    public InferenceModel freeze() {
+        return freeze(ModelFile.DType.FLOAT64);
+    }
+    // Snapshot in the given precision, FLOAT32 rounds the (float64 master) parameters
+    public InferenceModel freeze(ModelFile.DType dtype) {
+        return new InferenceModel(layerSizes, parameterData(), dtype);
+    }
+
+    // Int8 snapshot with activation scales calibrated on a sample of the inputs (see Quantizer)
+    public InferenceModel quantize(double[][] calibration) {
+        return Quantizer.quantize(this, calibration);
+    }
+
+    // Drops the cached inference snapshot after the parameter data was modified
+    public void parametersChanged() {
+        inference = null;
+    }
+
+    public int[] layerSizes() {
+        return layerSizes.clone();
+    }
+
+    public List<Value> parameters() {
+        return new ArrayList<>(Arrays.asList(parameterView));
+    }
+    /**
+     * The parameters in parameters() order without copying, for hot loops such as optimizer
+     * updates. The array is shared with the model and must not be modified.
+     */
+    public Value[] parameterView() {
+        return parameterView;
+    }
+    public List<Value> weights() {
+        return new ArrayList<>(Arrays.asList(weightView));
+    }
+    // The weights in weights() order without copying, shared with the model like parameterView()
+    public Value[] weightView() {
+        return weightView;
     }
 
+    // Saves the parameters in the binary model format (see ModelFile)
     public void saveModel(String filePath) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
-            this.parameters().forEach(param -> {
-                writer.println(param.data);
-            });
-            writer.close();
+        saveModel(filePath, ModelFile.DType.FLOAT64);
+    }
+    // FLOAT32 halves the file size, loading it back gives the float-rounded parameters
+    public void saveModel(String filePath, ModelFile.DType dtype) {
+        try {
+            ModelFile.write(Paths.get(filePath), layerSizes, parameterData(), dtype);
+        } catch (IOException e) {
+            System.err.println("Error saving model: " + e.getMessage());
+        }
+    }
+    // INT8 file with activation scales calibrated on a sample of the inputs, about 1/8 of the FLOAT64 size
+    public void saveQuantizedModel(String filePath, double[][] calibration) {
+        try {
+            ModelFile.writeQuantized(Paths.get(filePath), layerSizes, parameterData(), Quantizer.calibrate(layerSizes, parameterData(), calibration));
         } catch (IOException e) {
             System.err.println("Error saving model: " + e.getMessage());
         }
     }
+    // Loads a binary model file, or a legacy text file with one parameter per line. Overwrites the
+    // parameters in place, so not for reloading while other threads predict (see serving.ModelRegistry)
     public void loadModel(String filePath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
+        try {
+            Path path = Paths.get(filePath);
+            if (ModelFile.isModelFile(path)) {
+                ModelFile file = ModelFile.read(path);
+                if (!Arrays.equals(file.layerSizes, layerSizes)) {
+                    throw new IOException("Model file layer sizes " + Arrays.toString(file.layerSizes) + " do not match " + Arrays.toString(layerSizes));
+                }
+                setParameterData(file.parameters);
+            } else {
+                loadTextModel(path);
+            }
+            parametersChanged();
+        } catch (IOException e) {
+            System.err.println("Error loading model: " + e.getMessage());
+        }
+    }
+    private void loadTextModel(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path)) {
             String line;
-            List<Value> params = this.parameters();
             int i = 0;
-            while ((line = reader.readLine()) != null && i < params.size()) {
-                params.get(i).data = Double.parseDouble(line);
+            while ((line = reader.readLine()) != null && i < parameterView.length) {
+                parameterView[i].data = Double.parseDouble(line);
                 i++;
             }
-        } catch (IOException e) {
-            System.err.println("Error loading model: " + e.getMessage());
         }
     }
 
+    // Parameter data in parameters() order
+    public double[] parameterData() {
+        double[] data = new double[parameterView.length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = parameterView[i].data;
+        }
+        return data;
+    }
+    public void setParameterData(double[] data) {
+        if (data.length != parameterView.length) {
+            throw new IllegalArgumentException("Expected " + parameterView.length + " parameters, got " + data.length);
+        }
+        for (int i = 0; i < data.length; i++) {
+            parameterView[i].data = data[i];
+        }
+        parametersChanged();
+    }
+
     public void zeroGrad() {
-        for (Value p : parameters()) {
+        for (Value p : parameterView) {
             p.grad = 0.0;
         }
     }
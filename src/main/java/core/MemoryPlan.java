@@ -0,0 +1,118 @@
+package core;
+
+import java.util.Arrays;
+
+/**
+ * Activation memory plan of a batched MLP training step, executed by PlannedExecutor.
+ *
+ * The input of every checkpointEvery-th layer is kept from the forward pass, the activations in
+ * between are dropped as soon as the next layer is computed and recomputed segment by segment
+ * during backward. checkpointEvery = 1 keeps every activation (no recomputation); about sqrt(L)
+ * for L layers brings the activation memory from O(L) layers down to O(sqrt(L)) at the cost of
+ * roughly one extra forward pass.
+ */
+public final class MemoryPlan {
+    public final int[] layerSizes;
+    public final int batchSize;
+    public final int checkpointEvery;
+
+    public MemoryPlan(int[] layerSizes, int batchSize, int checkpointEvery) {
+        if (layerSizes.length < 2) {
+            throw new IllegalArgumentException("Expected at least an input and an output layer size.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        if (checkpointEvery < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1 layer.");
+        }
+        this.layerSizes = layerSizes.clone();
+        this.batchSize = batchSize;
+        this.checkpointEvery = checkpointEvery;
+    }
+
+    // Every activation kept, buffers still reused once their lifetime ends
+    public static MemoryPlan storeAll(int[] layerSizes, int batchSize) {
+        return new MemoryPlan(layerSizes, batchSize, 1);
+    }
+    // Checkpoints every ceil(sqrt(L)) layers
+    public static MemoryPlan checkpointed(int[] layerSizes, int batchSize) {
+        int layers = layerSizes.length - 1;
+        return new MemoryPlan(layerSizes, batchSize, (int) Math.ceil(Math.sqrt(layers)));
+    }
+
+    public int numLayers() {
+        return layerSizes.length - 1;
+    }
+
+    // True if the input of layer l is kept from the forward pass (layer 0 gets the batch itself)
+    public boolean stored(int l) {
+        return l % checkpointEvery == 0;
+    }
+
+    // Hidden activations recomputed during backward, per step
+    public int recomputedLayers() {
+        int count = 0;
+        for (int l = 1; l < numLayers(); l++) {
+            if (!stored(l)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Peak bytes of the activation and gradient buffers of one step with batchSize rows, obtained
+     * by replaying the buffer schedule of PlannedExecutor. Excludes the input batch and the
+     * parameter-sized buffers (see parameterBytes()).
+     */
+    public long peakActivationBytes() {
+        int layers = numLayers();
+        long live = 0, peak = 0;
+        // Forward: z = a_l W_l + b_l (activated in place) becomes a_l+1, a_l is released unless stored
+        for (int l = 0; l < layers; l++) {
+            live += width(l + 1);
+            peak = Math.max(peak, live);
+            if (l > 0 && !stored(l)) {
+                live -= width(l);
+            }
+        }
+        // Backward: the logits buffer holds the gradient, dropped activations are recomputed per segment
+        boolean recomputed = false;
+        for (int l = layers - 1; l > 0; l--) {
+            if (!stored(l) && !recomputed) {
+                int start = l - l % checkpointEvery;
+                for (int j = start; j < l; j++) {
+                    live += width(j + 1);
+                    peak = Math.max(peak, live);
+                }
+                recomputed = true;
+            }
+            if (stored(l)) {
+                recomputed = false;
+            }
+            // Gradient of the layer input replaces the gradient of its output, a_l is no longer needed
+            live += width(l);
+            peak = Math.max(peak, live);
+            live -= width(l + 1) + width(l);
+        }
+        return peak * Double.BYTES;
+    }
+    // rows x size of layer l, in doubles
+    private long width(int l) {
+        return (long) batchSize * layerSizes[l];
+    }
+
+    // Weight copies and gradient accumulators of an executor, independent of the batch size
+    public long parameterBytes() {
+        long count = 0;
+        for (int l = 0; l < numLayers(); l++) {
+            count += (long) (layerSizes[l] + 1) * layerSizes[l + 1];
+        }
+        return 2 * count * Double.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MemoryPlan(layers=%s, batch=%d, checkpointEvery=%d, peak activations=%.2f MB, parameter buffers=%.2f MB, recomputed layers=%d)",
+                Arrays.toString(layerSizes), batchSize, checkpointEvery, peakActivationBytes() / 1e6, parameterBytes() / 1e6, recomputedLayers());
+    }
+}
@@ -0,0 +1,267 @@
+package core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Versioned binary model format.
+ *
+ * Layout (little-endian): magic "JNCM", version, dtype, number of layer sizes, the layer sizes,
+ * parameter count, CRC32 of the payload, zero padding to an 8 byte boundary, then the raw
+ * parameters in MLP.parameters() order. Files are memory-mapped on read and the payload is
+ * bulk-copied into the parameter array, so nothing is parsed.
+ *
+ * INT8 files (see Quantizer) hold per layer the float scale of its input, then per neuron its
+ * float weight scale, its float bias and its int8 weights. Reading one gives the dequantized
+ * parameters plus the activation scales, toInferenceModel() rebuilds the same int8 snapshot.
+ */
+public final class ModelFile {
+    public static final int MAGIC = 0x4D434E4A; // "JNCM" in little-endian byte order
+    public static final int VERSION = 1;
+
+    public enum DType {
+        FLOAT64(0, Double.BYTES),
+        FLOAT32(1, Float.BYTES),
+        INT8(2, Byte.BYTES);
+
+        final int code;
+        final int bytes;
+
+        DType(int code, int bytes) {
+            this.code = code;
+            this.bytes = bytes;
+        }
+
+        static DType of(int code) throws IOException {
+            for (DType d : values()) {
+                if (d.code == code) return d;
+            }
+            throw new IOException("Unknown dtype code " + code);
+        }
+    }
+
+    public final int[] layerSizes;
+    public final double[] parameters;
+    public final DType dtype;
+    // Calibrated input scale of every layer, null unless INT8
+    public final float[] activationScales;
+
+    private ModelFile(int[] layerSizes, double[] parameters, DType dtype, float[] activationScales) {
+        this.layerSizes = layerSizes;
+        this.parameters = parameters;
+        this.dtype = dtype;
+        this.activationScales = activationScales;
+    }
+
+    // Immutable inference snapshot straight from the file, without an MLP, in the precision of the file
+    public InferenceModel toInferenceModel() {
+        if (dtype == DType.INT8) {
+            return new InferenceModel(layerSizes, parameters, activationScales);
+        }
+        return new InferenceModel(layerSizes, parameters, dtype);
+    }
+
+    /**
+     * Writes the parameters to a temporary file next to path and atomically moves it into place,
+     * so concurrent readers never see a partially written model.
+     */
+    public static void write(Path path, int[] layerSizes, double[] parameters, DType dtype) throws IOException {
+        if (dtype == DType.INT8) {
+            throw new IllegalArgumentException("INT8 files need calibrated activation scales, see writeQuantized.");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(parameters.length * dtype.bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (double p : parameters) {
+            if (dtype == DType.FLOAT32) {
+                payload.putFloat((float) p);
+            } else {
+                payload.putDouble(p);
+            }
+        }
+        write(path, layerSizes, parameters.length, dtype, payload.flip());
+    }
+
+    /**
+     * Writes an INT8 file: the parameters are quantized with one scale per neuron, as in an INT8
+     * InferenceModel built from the same parameters and activation scales.
+     *
+     * @param activationScales Scale of the input of every layer, from Quantizer.calibrate().
+     */
+    public static void writeQuantized(Path path, int[] layerSizes, double[] parameters, float[] activationScales) throws IOException {
+        if (activationScales.length != layerSizes.length - 1) {
+            throw new IllegalArgumentException("Expected " + (layerSizes.length - 1) + " activation scales, got " + activationScales.length);
+        }
+        long expected = 0;
+        for (int l = 0; l < activationScales.length; l++) {
+            expected += (long) (layerSizes[l] + 1) * layerSizes[l + 1];
+        }
+        if (expected != parameters.length) {
+            throw new IllegalArgumentException("Expected " + expected + " parameters, got " + parameters.length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate((int) int8PayloadSize(layerSizes)).order(ByteOrder.LITTLE_ENDIAN);
+        int k = 0;
+        for (int l = 0; l < activationScales.length; l++) {
+            int numInputs = layerSizes[l];
+            payload.putFloat(activationScales[l]);
+            for (int j = 0; j < layerSizes[l + 1]; j++) {
+                float scale = Quantizer.weightScale(parameters, k, numInputs);
+                payload.putFloat(scale).putFloat((float) parameters[k + numInputs]);
+                for (int i = 0; i < numInputs; i++) {
+                    payload.put(Quantizer.quantize(parameters[k + i], scale));
+                }
+                k += numInputs + 1;
+            }
+        }
+        write(path, layerSizes, parameters.length, DType.INT8, payload.flip());
+    }
+
+    private static void write(Path path, int[] layerSizes, int count, DType dtype, ByteBuffer payload) throws IOException {
+        int headerSize = headerSize(layerSizes.length);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(dtype.code).putInt(layerSizes.length);
+        for (int size : layerSizes) {
+            header.putInt(size);
+        }
+        header.putInt(count).putInt((int) crc.getValue());
+        header.position(headerSize).flip();
+
+        Path absolute = path.toAbsolutePath();
+        Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            while (payload.hasRemaining()) channel.write(payload);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ModelFile read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(mapped, path.toString());
+        }
+    }
+
+    /**
+     * Parses a model file already in memory, e.g. read once into a heap array that the caller also
+     * hashed. The parsed model is exactly the bytes the caller saw only if the buffer is a private
+     * copy: a mapped buffer still reflects later in-place writes to the file.
+     *
+     * @param bytes The whole file, from its position to its limit (not modified).
+     * @param source Name of the file for error messages.
+     */
+    public static ModelFile read(ByteBuffer bytes, String source) throws IOException {
+        ByteBuffer buffer = bytes.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a model file: " + source);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported model file version " + version);
+        }
+        DType dtype = DType.of(buffer.getInt());
+        int numSizes = buffer.getInt();
+        // long: a corrupt count near Integer.MAX_VALUE must not wrap around and pass
+        if (numSizes < 2 || buffer.remaining() < 4L * numSizes + 8) {
+            throw new IOException("Corrupt model file header: " + source);
+        }
+        int[] layerSizes = new int[numSizes];
+        for (int i = 0; i < numSizes; i++) {
+            layerSizes[i] = buffer.getInt();
+            if (layerSizes[i] < 1) {
+                throw new IOException("Corrupt model file header: " + source);
+            }
+        }
+        int count = buffer.getInt();
+        int checksum = buffer.getInt();
+        int headerSize = headerSize(numSizes);
+        long payloadSize = (dtype == DType.INT8) ? int8PayloadSize(layerSizes) : (long) count * dtype.bytes;
+        if (count < 0 || buffer.limit() != headerSize + payloadSize) {
+            throw new IOException("Model file has unexpected size: " + source);
+        }
+
+        ByteBuffer payload = buffer.position(headerSize).slice().order(ByteOrder.LITTLE_ENDIAN);
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Model file checksum mismatch: " + source);
+        }
+
+        double[] parameters = new double[count];
+        float[] activationScales = null;
+        if (dtype == DType.INT8) {
+            long expected = 0;
+            for (int l = 0; l + 1 < numSizes; l++) {
+                expected += (long) (layerSizes[l] + 1) * layerSizes[l + 1];
+            }
+            if (expected != count) {
+                throw new IOException("Model file parameter count does not match its layer sizes: " + source);
+            }
+            activationScales = new float[numSizes - 1];
+            int k = 0;
+            for (int l = 0; l < activationScales.length; l++) {
+                activationScales[l] = payload.getFloat();
+                for (int j = 0; j < layerSizes[l + 1]; j++) {
+                    float scale = payload.getFloat();
+                    float bias = payload.getFloat();
+                    for (int i = 0; i < layerSizes[l]; i++) {
+                        parameters[k++] = payload.get() * (double) scale;
+                    }
+                    parameters[k++] = bias;
+                }
+            }
+        } else if (dtype == DType.FLOAT32) {
+            float[] floats = new float[count];
+            payload.asFloatBuffer().get(floats);
+            for (int i = 0; i < count; i++) {
+                parameters[i] = floats[i];
+            }
+        } else {
+            payload.asDoubleBuffer().get(parameters);
+        }
+        return new ModelFile(layerSizes, parameters, dtype, activationScales);
+    }
+
+    // True if the file starts with the binary model magic number
+    public static boolean isModelFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0);
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    // Per layer its activation scale, per neuron its weight scale, bias and int8 weights
+    private static long int8PayloadSize(int[] layerSizes) {
+        long size = 0;
+        for (int l = 0; l + 1 < layerSizes.length; l++) {
+            size += Float.BYTES + (long) layerSizes[l + 1] * (2 * Float.BYTES + layerSizes[l]);
+        }
+        return size;
+    }
+
+    // Header padded to 8 bytes so the payload is aligned for doubles
+    private static int headerSize(int numSizes) {
+        int size = 4 * (4 + numSizes + 2);
+        return (size + 7) & ~7;
+    }
+
+    @Override
+    public String toString() {
+        return "ModelFile(layers=" + Arrays.toString(layerSizes) + ", dtype=" + dtype + ", parameters=" + parameters.length + ")";
+    }
+}
@@ -17,10 +17,8 @@ public class Neuron {
     }
 
     public Value forward(List<Value> inputs, boolean isOutputLayer) {
-        Value z = b;
-        for (int i = 0; i < w.size(); i++) {
-            z = z.add(w.get(i).mul(inputs.get(i)));
-        }
+        // One fused node instead of a chain of mul and add nodes
+        Value z = Value.dot(w, inputs, b);
         if (isOutputLayer) {
             // Returning raw logits to allow using appropriate activation function for the output layer
             return z;
@@ -39,4 +37,7 @@ public class Neuron {
         List<Value> weights = new ArrayList<>(w);
         return weights;
     }
+    Value bias() {
+        return b;
+    }
 }
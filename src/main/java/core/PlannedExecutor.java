@@ -0,0 +1,246 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batched forward and backward pass of an MLP over flat buffers, following a MemoryPlan.
+ *
+ * Unlike the Tensor graph, which keeps every intermediate node of a batch alive until backward
+ * finishes, the executor hands each activation and gradient buffer back to a pool as soon as its
+ * last use has passed, computes activations in place, and (with checkpointEvery > 1) drops the
+ * activations between checkpoints and recomputes them during backward. Buffers are reused across
+ * steps, so a step allocates nothing once the pool is warm.
+ *
+ * Parameters stay owned by the MLP's Values: run() copies their data, accumulateGrad() adds the
+ * gradients back. Not thread-safe, use one executor per worker.
+ */
+public final class PlannedExecutor {
+    private final MemoryPlan plan;
+    private final Value[][] weightViews;
+    private final Value[][] biasViews;
+    // Per layer: weights as [numInputs, numNeurons], biases, and their gradient accumulators
+    private final double[][] weights;
+    private final double[][] biases;
+    private final double[][] weightGrads;
+    private final double[][] biasGrads;
+    // Activations a_l (inputs of layer l) alive between forward and backward
+    private final double[][] activations;
+
+    // Free buffers, at most a few per layer width
+    private final List<double[]> pool = new ArrayList<>();
+    private long liveBytes = 0;
+    private long peakBytes = 0;
+    private long pooledBytes = 0;
+    // Rows of the last run() whose logits predicted their label
+    private int correct = 0;
+
+    public PlannedExecutor(MLP model, MemoryPlan plan) {
+        if (!Arrays.equals(plan.layerSizes, model.layerSizes())) {
+            throw new IllegalArgumentException("Memory plan layer sizes do not match the model.");
+        }
+        this.plan = plan;
+        int layers = plan.numLayers();
+        this.weightViews = new Value[layers][];
+        this.biasViews = new Value[layers][];
+        this.weights = new double[layers][];
+        this.biases = new double[layers][];
+        this.weightGrads = new double[layers][];
+        this.biasGrads = new double[layers][];
+        for (int l = 0; l < layers; l++) {
+            Layer layer = model.layers.get(l);
+            weightViews[l] = layer.weightView();
+            biasViews[l] = layer.biasView();
+            weights[l] = new double[weightViews[l].length];
+            biases[l] = new double[biasViews[l].length];
+            weightGrads[l] = new double[weightViews[l].length];
+            biasGrads[l] = new double[biasViews[l].length];
+        }
+        this.activations = new double[layers][];
+    }
+
+    public MemoryPlan plan() {
+        return plan;
+    }
+
+    /**
+     * Forward and backward pass over a batch, the gradients are kept until accumulateGrad().
+     *
+     * @param input rows x numInputs features, row-major.
+     * @param labels Class labels of the rows (0 or 1 for a single output).
+     * @param rows Number of rows, at most the batch size of the plan.
+     * @param scale Factor of the gradients, e.g. 1 / rows for the mean loss.
+     * @return Cross-entropy summed over the rows (binary for a single output).
+     */
+    public double run(double[] input, int[] labels, int rows, double scale) {
+        if (rows > plan.batchSize) {
+            throw new IllegalArgumentException("Expected at most " + plan.batchSize + " rows, got " + rows);
+        }
+        int[] sizes = plan.layerSizes;
+        int layers = plan.numLayers();
+        for (int l = 0; l < layers; l++) {
+            for (int k = 0; k < weights[l].length; k++) {
+                weights[l][k] = weightViews[l][k].data;
+            }
+            for (int j = 0; j < biases[l].length; j++) {
+                biases[l][j] = biasViews[l][j].data;
+            }
+            Arrays.fill(weightGrads[l], 0.0);
+            Arrays.fill(biasGrads[l], 0.0);
+        }
+
+        // Forward, keeping only the checkpointed activations
+        activations[0] = input;
+        double[] current = input;
+        for (int l = 0; l < layers; l++) {
+            double[] z = forwardLayer(current, l, rows);
+            if (l > 0 && !plan.stored(l)) {
+                release(current);
+                activations[l] = null;
+            }
+            if (l + 1 < layers) {
+                activations[l + 1] = z;
+            }
+            current = z;
+        }
+
+        // Loss, the logits buffer is overwritten with its gradient
+        double[] g = current;
+        double loss = lossAndGradient(g, labels, rows, sizes[layers], scale);
+
+        // Backward, recomputing each dropped segment from its checkpoint when entering it
+        for (int l = layers - 1; l >= 0; l--) {
+            if (activations[l] == null) {
+                int start = l - l % plan.checkpointEvery;
+                for (int j = start; j < l; j++) {
+                    activations[j + 1] = forwardLayer(activations[j], j, rows);
+                }
+            }
+            double[] a = activations[l];
+            int numInputs = sizes[l], numNeurons = sizes[l + 1];
+            Kernels.INSTANCE.gemmTransA(a, g, weightGrads[l], rows, numInputs, numNeurons);
+            double[] db = biasGrads[l];
+            for (int r = 0; r < rows; r++) {
+                for (int j = 0; j < numNeurons; j++) {
+                    db[j] += g[r * numNeurons + j];
+                }
+            }
+            if (l > 0) {
+                double[] ga = acquire(rows, numInputs);
+                Kernels.INSTANCE.gemmTransB(g, weights[l], ga, rows, numInputs, numNeurons);
+                // Through the ReLU of the previous layer
+                for (int i = 0; i < ga.length; i++) {
+                    if (a[i] <= 0) ga[i] = 0;
+                }
+                release(g);
+                release(a);
+                activations[l] = null;
+                g = ga;
+            } else {
+                release(g);
+                activations[0] = null;
+            }
+        }
+        return loss;
+    }
+
+    // z = a W_l + b_l, ReLU applied in place for hidden layers
+    private double[] forwardLayer(double[] a, int l, int rows) {
+        int numInputs = plan.layerSizes[l], numNeurons = plan.layerSizes[l + 1];
+        double[] z = acquire(rows, numNeurons);
+        Kernels.INSTANCE.gemm(a, weights[l], z, rows, numInputs, numNeurons);
+        Kernels.INSTANCE.addBias(z, biases[l], z, rows, numNeurons);
+        if (l + 1 < plan.numLayers()) {
+            Kernels.INSTANCE.relu(z, z);
+        }
+        return z;
+    }
+
+    // Fused softmax (sigmoid) cross-entropy as in Tensor.crossEntropy, logits replaced by scale * dLoss/dlogits
+    private double lossAndGradient(double[] z, int[] labels, int rows, int cols, double scale) {
+        double loss = 0.0;
+        correct = 0;
+        for (int r = 0; r < rows; r++) {
+            int o = r * cols;
+            if (cols == 1) {
+                double x = z[o], y = labels[r];
+                if (((x >= 0) ? 1 : 0) == labels[r]) correct++;
+                loss += Math.max(x, 0) - x * y + Math.log1p(Math.exp(-Math.abs(x)));
+                z[o] = (1.0 / (1.0 + Math.exp(-x)) - y) * scale;
+                continue;
+            }
+            int predicted = 0;
+            for (int j = 1; j < cols; j++) {
+                if (z[o + j] > z[o + predicted]) predicted = j;
+            }
+            if (predicted == labels[r]) correct++;
+            double max = z[o + predicted];
+            double sum = 0.0;
+            for (int j = 0; j < cols; j++) sum += Math.exp(z[o + j] - max);
+            double logSum = max + Math.log(sum);
+            loss += logSum - z[o + labels[r]];
+            for (int j = 0; j < cols; j++) {
+                z[o + j] = (Math.exp(z[o + j] - logSum) - ((j == labels[r]) ? 1.0 : 0.0)) * scale;
+            }
+        }
+        return loss;
+    }
+
+    // Rows of the last run() predicted right (argmax of the logits, or logit >= 0 for a single output)
+    public int correct() {
+        return correct;
+    }
+
+    // Adds the gradients of the last run() into the grad of the parameter Values
+    public void accumulateGrad() {
+        for (int l = 0; l < weightViews.length; l++) {
+            for (int k = 0; k < weightViews[l].length; k++) {
+                weightViews[l][k].grad += weightGrads[l][k];
+            }
+            for (int j = 0; j < biasViews[l].length; j++) {
+                biasViews[l][j].grad += biasGrads[l][j];
+            }
+        }
+    }
+
+    /**
+     * Buffer for rows x width values, reused from the pool when possible. Buffers are always sized
+     * for the full batch of the plan, so partial batches reuse them instead of adding a buffer per
+     * distinct row count; only the first rows x width values are zeroed and used.
+     */
+    private double[] acquire(int rows, int width) {
+        int length = plan.batchSize * width;
+        double[] buffer = null;
+        for (int i = pool.size() - 1; i >= 0; i--) {
+            if (pool.get(i).length == length) {
+                buffer = pool.get(i);
+                pool.set(i, pool.get(pool.size() - 1));
+                pool.remove(pool.size() - 1);
+                break;
+            }
+        }
+        if (buffer == null) {
+            buffer = new double[length];
+            pooledBytes += (long) length * Double.BYTES;
+        } else {
+            Arrays.fill(buffer, 0, rows * width, 0.0);
+        }
+        liveBytes += (long) length * Double.BYTES;
+        peakBytes = Math.max(peakBytes, liveBytes);
+        return buffer;
+    }
+    private void release(double[] buffer) {
+        liveBytes -= (long) buffer.length * Double.BYTES;
+        pool.add(buffer);
+    }
+
+    // Highest number of bytes in use at once by activation and gradient buffers so far
+    public long peakBytes() {
+        return peakBytes;
+    }
+    // Bytes held by the buffer pool (in use or free)
+    public long pooledBytes() {
+        return pooledBytes;
+    }
+}
@@ -0,0 +1,73 @@
+package core;
+
+/**
+ * Post-training int8 quantization of an MLP.
+ *
+ * Weights get one symmetric scale per neuron (max |w| / 127), activations one scale per layer
+ * calibrated as the largest |activation| seen at the input of that layer over a sample of the
+ * data (e.g. a few hundred training images), run through the float64 model. Biases become int32 in
+ * the scale of their neuron's accumulator, so a quantized layer is an int8 x int8 dot product
+ * accumulated in an int plus an integer bias (see InferenceModel).
+ */
+public final class Quantizer {
+    // Largest magnitude of a quantized value, the range is symmetric [-127, 127]
+    static final int QMAX = 127;
+
+    private Quantizer() {}
+
+    /**
+     * Per-layer activation scales of a model from a calibration sample.
+     *
+     * @param parameters Parameters in MLP.parameters() order.
+     * @param sample Representative inputs, one sample per row.
+     * @return Scale of the input of every layer (layerSizes.length - 1 values).
+     */
+    public static float[] calibrate(int[] layerSizes, double[] parameters, double[][] sample) {
+        if (sample.length == 0) {
+            throw new IllegalArgumentException("Calibration needs at least one sample.");
+        }
+        InferenceModel reference = new InferenceModel(layerSizes, parameters);
+        double[] maxAbs = new double[layerSizes.length - 1];
+        for (double[] in : sample) {
+            reference.observeActivations(in, maxAbs);
+        }
+        float[] scales = new float[maxAbs.length];
+        for (int l = 0; l < scales.length; l++) {
+            scales[l] = scale(maxAbs[l]);
+        }
+        return scales;
+    }
+
+    // Calibrates on the sample and builds the int8 snapshot of the model
+    public static InferenceModel quantize(MLP model, double[][] sample) {
+        int[] layerSizes = model.layerSizes();
+        double[] parameters = model.parameterData();
+        return new InferenceModel(layerSizes, parameters, calibrate(layerSizes, parameters, sample));
+    }
+
+    // Symmetric scale mapping [-maxAbs, maxAbs] onto [-127, 127] (1 for an all-zero range)
+    static float scale(double maxAbs) {
+        return (maxAbs > 0) ? (float) (maxAbs / QMAX) : 1.0f;
+    }
+
+    // Scale of the weights of one neuron, values[offset..offset+length)
+    static float weightScale(double[] values, int offset, int length) {
+        double maxAbs = 0.0;
+        for (int i = offset; i < offset + length; i++) {
+            maxAbs = Math.max(maxAbs, Math.abs(values[i]));
+        }
+        return scale(maxAbs);
+    }
+
+    // Round to nearest and saturate to [-127, 127]
+    static byte quantize(double x, double scale) {
+        long q = Math.round(x / scale);
+        return (byte) Math.max(-QMAX, Math.min(QMAX, q));
+    }
+
+    // Bias in the scale of the accumulator (weight scale * input scale), saturated to an int
+    static int quantizeBias(double bias, double accumulatorScale) {
+        long q = Math.round(bias / accumulatorScale);
+        return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, q));
+    }
+}
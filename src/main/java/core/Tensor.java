@@ -0,0 +1,529 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Dense tensor node of the autograd graph.
+ *
+ * Data and gradients live in contiguous double[] buffers, indexed through shape and strides,
+ * so a whole layer (or batch) costs one node instead of one Value per scalar operation.
+ * Matrix ops (matmul, addBias, softmax, pick, transpose) expect rank 2 tensors of shape [rows, cols].
+ */
+public class Tensor {
+    public final double[] data;
+    public final double[] grad;
+    public final int[] shape;
+    public final int[] strides;
+
+    private Tensor[] prev;
+    private Runnable backward = () -> {};
+    @SuppressWarnings("unused") // String op is used for debugging
+    private String op;
+
+    // Constructor for leaf tensor (row-major)
+    public Tensor(double[] data, int... shape) {
+        this(data, shape, new Tensor[0], "");
+    }
+
+    // Constructor for internal nodes (row-major)
+    Tensor(double[] data, int[] shape, Tensor[] prev, String op) {
+        if (data.length != sizeOf(shape)) {
+            throw new IllegalArgumentException("Data length " + data.length + " does not match shape " + Arrays.toString(shape));
+        }
+        this.data = data;
+        this.grad = new double[data.length];
+        this.shape = shape.clone();
+        this.strides = rowMajorStrides(shape);
+        this.prev = prev;
+        this.op = op;
+    }
+
+    // Constructor for views sharing storage (and gradient buffer) with another tensor
+    private Tensor(Tensor base, int[] shape, int[] strides, String op) {
+        this.data = base.data;
+        this.grad = base.grad;
+        this.shape = shape;
+        this.strides = strides;
+        this.prev = new Tensor[]{base};
+        this.op = op;
+    }
+
+    public static Tensor zeros(int... shape) {
+        return new Tensor(new double[sizeOf(shape)], shape);
+    }
+
+    // Stacks the rows into a [rows.length, rows[0].length] leaf tensor
+    public static Tensor of(double[][] rows) {
+        int cols = rows[0].length;
+        double[] data = new double[rows.length * cols];
+        for (int i = 0; i < rows.length; i++) {
+            if (rows[i].length != cols) {
+                throw new IllegalArgumentException("All rows must have the same length.");
+            }
+            System.arraycopy(rows[i], 0, data, i * cols, cols);
+        }
+        return new Tensor(data, rows.length, cols);
+    }
+
+    /**
+     * Gathers scalar Values into a tensor node. The backward rule scatters the gradient back
+     * into each Value's grad, so the tensor path trains the same parameters as the scalar path.
+     */
+    public static Tensor fromValues(Value[] values, int... shape) {
+        double[] data = new double[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = values[i].data;
+        }
+        Tensor result = new Tensor(data, shape, new Tensor[0], "values");
+        result.backward = () -> {
+            for (int i = 0; i < values.length; i++) {
+                values[i].grad += result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    // New leaf sharing this tensor's data but with its own gradient buffer and no graph history
+    public Tensor detach() {
+        Tensor c = contiguous();
+        return new Tensor(c.data, c.shape);
+    }
+
+    public int size() {
+        return data.length;
+    }
+    public int rows() {
+        checkMatrix();
+        return shape[0];
+    }
+    public int cols() {
+        checkMatrix();
+        return shape[1];
+    }
+    public double get(int row, int col) {
+        return data[row * strides[0] + col * strides[1]];
+    }
+    // Value of a single element tensor (e.g. a loss)
+    public double item() {
+        if (data.length != 1) {
+            throw new IllegalStateException("item() requires a single element tensor, got shape " + Arrays.toString(shape));
+        }
+        return data[0];
+    }
+
+    // Matrix product [n, k] x [k, m] -> [n, m], strided views are copied to row-major first
+    public Tensor matmul(Tensor other) {
+        int n = rows(), k = cols(), m = other.cols();
+        if (other.rows() != k) {
+            throw new IllegalArgumentException("Shape mismatch for matmul: " + Arrays.toString(shape) + " x " + Arrays.toString(other.shape));
+        }
+        Tensor a = this.contiguous(), b = other.contiguous();
+        double[] out = new double[n * m];
+        Kernels.INSTANCE.gemm(a.data, b.data, out, n, k, m);
+        Tensor result = new Tensor(out, new int[]{n, m}, new Tensor[]{a, b}, "matmul");
+        result.backward = () -> {
+            // dA = dC * B^T, dB = A^T * dC
+            Kernels.INSTANCE.gemmTransB(result.grad, b.data, a.grad, n, k, m);
+            Kernels.INSTANCE.gemmTransA(a.data, result.grad, b.grad, n, k, m);
+        };
+        return result;
+    }
+
+    // Adds a bias row vector (size cols) to every row
+    public Tensor addBias(Tensor bias) {
+        int n = rows(), m = cols();
+        if (bias.size() != m) {
+            throw new IllegalArgumentException("Bias size " + bias.size() + " does not match " + m + " columns.");
+        }
+        Tensor a = this.contiguous();
+        double[] out = new double[n * m];
+        Kernels.INSTANCE.addBias(a.data, bias.data, out, n, m);
+        Tensor result = new Tensor(out, new int[]{n, m}, new Tensor[]{a, bias}, "+bias");
+        result.backward = () -> {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    double g = result.grad[i * m + j];
+                    a.grad[i * m + j] += g;
+                    bias.grad[j] += g;
+                }
+            }
+        };
+        return result;
+    }
+
+    // Element-wise sum of two tensors with the same shape
+    public Tensor add(Tensor other) {
+        Tensor a = this.contiguous(), b = other.contiguous();
+        checkSameShape(other);
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a.data[i] + b.data[i];
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a, b}, "+");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += result.grad[i];
+                b.grad[i] += result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    // Element-wise product of two tensors with the same shape
+    public Tensor mul(Tensor other) {
+        Tensor a = this.contiguous(), b = other.contiguous();
+        checkSameShape(other);
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a.data[i] * b.data[i];
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a, b}, "*");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += b.data[i] * result.grad[i];
+                b.grad[i] += a.data[i] * result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    public Tensor add(double c) {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a.data[i] + c;
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "+c");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    public Tensor mul(double c) {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = a.data[i] * c;
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "*c");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += c * result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    public Tensor log() {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = Math.log(a.data[i]);
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "log");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += (1.0 / a.data[i]) * result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    public Tensor exp() {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        Kernels.INSTANCE.exp(a.data, out);
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "exp");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += out[i] * result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    // Activation functions
+    public Tensor relu() {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        Kernels.INSTANCE.relu(a.data, out);
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "ReLU");
+        result.backward = () -> Kernels.INSTANCE.reluBackward(out, result.grad, a.grad);
+        return result;
+    }
+    public Tensor sigmoid() {
+        Tensor a = this.contiguous();
+        double[] out = new double[a.data.length];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = 1.0 / (1.0 + Math.exp(-a.data[i]));
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{a}, "sigmoid");
+        result.backward = () -> {
+            for (int i = 0; i < out.length; i++) {
+                a.grad[i] += out[i] * (1 - out[i]) * result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    // Row-wise softmax, shifted by the row maximum for numerical stability
+    public Tensor softmax() {
+        int n = rows(), m = cols();
+        double[] out = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < m; j++) {
+                max = Math.max(max, get(i, j));
+            }
+            double sum = 0.0;
+            for (int j = 0; j < m; j++) {
+                out[i * m + j] = Math.exp(get(i, j) - max);
+                sum += out[i * m + j];
+            }
+            for (int j = 0; j < m; j++) {
+                out[i * m + j] /= sum;
+            }
+        }
+        Tensor result = new Tensor(out, new int[]{n, m}, new Tensor[]{this}, "softmax");
+        result.backward = () -> {
+            for (int i = 0; i < n; i++) {
+                // dx_j = s_j * (dy_j - sum_k dy_k * s_k)
+                double dot = 0.0;
+                for (int j = 0; j < m; j++) {
+                    dot += result.grad[i * m + j] * out[i * m + j];
+                }
+                for (int j = 0; j < m; j++) {
+                    this.grad[i * strides[0] + j * strides[1]] += out[i * m + j] * (result.grad[i * m + j] - dot);
+                }
+            }
+        };
+        return result;
+    }
+
+    // Selects one column per row: [n, m] -> [n, 1], out[i] = this[i, columns[i]]
+    public Tensor pick(int[] columns) {
+        int n = rows();
+        if (columns.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " column indices, got " + columns.length);
+        }
+        checkTargets(columns, cols());
+        double[] out = new double[n];
+        for (int i = 0; i < n; i++) {
+            out[i] = get(i, columns[i]);
+        }
+        Tensor result = new Tensor(out, new int[]{n, 1}, new Tensor[]{this}, "pick");
+        result.backward = () -> {
+            for (int i = 0; i < n; i++) {
+                this.grad[i * strides[0] + columns[i] * strides[1]] += result.grad[i];
+            }
+        };
+        return result;
+    }
+
+    // Same check as Value.crossEntropy, an out-of-range index would read a neighbouring row
+    private static void checkTargets(int[] targets, int classes) {
+        for (int target : targets) {
+            if (target < 0 || target >= classes) {
+                throw new IllegalArgumentException("Target " + target + " out of range for " + classes + " classes.");
+            }
+        }
+    }
+
+    // Sum of all elements as a [1] tensor
+    public Tensor sum() {
+        Tensor a = this.contiguous();
+        double total = 0.0;
+        for (double d : a.data) {
+            total += d;
+        }
+        Tensor result = new Tensor(new double[]{total}, new int[]{1}, new Tensor[]{a}, "sum");
+        result.backward = () -> {
+            for (int i = 0; i < a.grad.length; i++) {
+                a.grad[i] += result.grad[0];
+            }
+        };
+        return result;
+    }
+    public Tensor mean() {
+        return sum().mul(1.0 / data.length);
+    }
+
+    // Fused losses on raw logits, averaged over the rows as a [1] tensor
+
+    // Softmax cross-entropy of [n, m] logits against one class index per row; gradient (softmax - onehot) / n
+    public Tensor crossEntropy(int[] labels) {
+        int n = rows(), m = cols();
+        if (labels.length != n) {
+            throw new IllegalArgumentException("Expected " + n + " labels, got " + labels.length);
+        }
+        checkTargets(labels, m);
+        double[] softmax = new double[n * m];
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            double max = Double.NEGATIVE_INFINITY;
+            for (int j = 0; j < m; j++) {
+                max = Math.max(max, get(i, j));
+            }
+            double sum = 0.0;
+            for (int j = 0; j < m; j++) {
+                softmax[i * m + j] = Math.exp(get(i, j) - max);
+                sum += softmax[i * m + j];
+            }
+            for (int j = 0; j < m; j++) {
+                softmax[i * m + j] /= sum;
+            }
+            total += max + Math.log(sum) - get(i, labels[i]);
+        }
+        Tensor result = new Tensor(new double[]{total / n}, new int[]{1}, new Tensor[]{this}, "crossentropy");
+        result.backward = () -> {
+            double g = result.grad[0] / n;
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    double target = (j == labels[i]) ? 1.0 : 0.0;
+                    this.grad[i * strides[0] + j * strides[1]] += (softmax[i * m + j] - target) * g;
+                }
+            }
+        };
+        return result;
+    }
+
+    // Sigmoid binary cross-entropy of [n, 1] logits, max(z, 0) - z * y + log(1 + exp(-|z|)); gradient (sigmoid(z) - y) / n
+    public Tensor binaryCrossEntropy(double[] targets) {
+        int n = rows();
+        if (cols() != 1 || targets.length != n) {
+            throw new IllegalArgumentException("Expected [" + targets.length + ", 1] logits, got " + Arrays.toString(shape));
+        }
+        double total = 0.0;
+        for (int i = 0; i < n; i++) {
+            double z = get(i, 0);
+            total += Math.max(z, 0) - z * targets[i] + Math.log1p(Math.exp(-Math.abs(z)));
+        }
+        Tensor result = new Tensor(new double[]{total / n}, new int[]{1}, new Tensor[]{this}, "bce");
+        result.backward = () -> {
+            double g = result.grad[0] / n;
+            for (int i = 0; i < n; i++) {
+                double z = get(i, 0);
+                this.grad[i * strides[0]] += (1.0 / (1.0 + Math.exp(-z)) - targets[i]) * g;
+            }
+        };
+        return result;
+    }
+
+    // Transposed view sharing data and gradient buffers with this tensor
+    public Tensor transpose() {
+        checkMatrix();
+        return new Tensor(this, new int[]{shape[1], shape[0]}, new int[]{strides[1], strides[0]}, "T");
+    }
+
+    public boolean isContiguous() {
+        return Arrays.equals(strides, rowMajorStrides(shape));
+    }
+    // Row-major copy of a strided view (or this tensor if already contiguous)
+    public Tensor contiguous() {
+        if (isContiguous()) {
+            return this;
+        }
+        int n = rows(), m = cols();
+        double[] out = new double[n * m];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < m; j++) {
+                out[i * m + j] = get(i, j);
+            }
+        }
+        Tensor result = new Tensor(out, shape, new Tensor[]{this}, "contiguous");
+        result.backward = () -> {
+            for (int i = 0; i < n; i++) {
+                for (int j = 0; j < m; j++) {
+                    this.grad[i * strides[0] + j * strides[1]] += result.grad[i * m + j];
+                }
+            }
+        };
+        return result;
+    }
+
+    // Global backward pass for the whole computational graph
+    public void backward() {
+        // Seeding the gradient of the final node (normally a single element loss)
+        Arrays.fill(this.grad, 1.0);
+
+        // Traverse in reverse topo order, calling stored backprop functions
+        Tensor[] topo = topologicalOrder(this);
+        for (int i = topo.length - 1; i >= 0; i--) {
+            topo[i].backward.run();
+        }
+    }
+    // Number of nodes in the graph rooted at this tensor
+    public int graphSize() {
+        return topologicalOrder(this).length;
+    }
+
+    // Iterative depth-first post-order, as in Value.topologicalOrder: deep graphs (long unrolled
+    // sequences) cannot overflow the call stack, and nodes are told apart by identity
+    private static Tensor[] topologicalOrder(Tensor root) {
+        Set<Tensor> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Tensor> topo = new ArrayList<>();
+        Tensor[] stack = new Tensor[64];
+        int[] next = new int[64];
+        stack[0] = root;
+        visited.add(root);
+        int depth = 1;
+        while (depth > 0) {
+            Tensor t = stack[depth - 1];
+            if (next[depth - 1] < t.prev.length) {
+                Tensor p = t.prev[next[depth - 1]++];
+                if (visited.add(p)) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        next = Arrays.copyOf(next, depth * 2);
+                    }
+                    stack[depth] = p;
+                    next[depth] = 0;
+                    depth++;
+                }
+            } else {
+                topo.add(t);
+                depth--;
+            }
+        }
+        return topo.toArray(new Tensor[0]);
+    }
+
+    private void checkMatrix() {
+        if (shape.length != 2) {
+            throw new IllegalStateException("Expected a rank 2 tensor, got shape " + Arrays.toString(shape));
+        }
+    }
+    private void checkSameShape(Tensor other) {
+        if (!Arrays.equals(shape, other.shape)) {
+            throw new IllegalArgumentException("Shape mismatch: " + Arrays.toString(shape) + " vs " + Arrays.toString(other.shape));
+        }
+    }
+    private static int sizeOf(int[] shape) {
+        int size = 1;
+        for (int d : shape) size *= d;
+        return size;
+    }
+    private static int[] rowMajorStrides(int[] shape) {
+        int[] strides = new int[shape.length];
+        int stride = 1;
+        for (int i = shape.length - 1; i >= 0; i--) {
+            strides[i] = stride;
+            stride *= shape[i];
+        }
+        return strides;
+    }
+
+    // Overriding default print function
+    @Override
+    public String toString() {
+        return "Tensor(shape=" + Arrays.toString(shape) + ")";
+    }
+}
@@ -1,66 +1,92 @@
 package core;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
-import java.util.ArrayList;
-import java.util.HashSet;
 
 public class Value {
     public double data;
     public double grad;
-    
-    private Set<Value> prev;
+
+    // Operands in order (the forward pass is recomputed from them when a Tape is replayed)
+    private final Value[] prev;
     private Runnable backward = () -> {};
-    @SuppressWarnings("unused") // String op is used for debugging
-    private String op;
+    private final String op;
+    // Constant operand: exponent of pow nodes, target of the cross-entropy nodes
+    private double param;
+
+    // Tape of the graph rooted at this node, built on the first backward() call
+    private Tape tape;
 
     // Constructor for leaf node
     public Value(double data) {
         this.data = data;
         this.grad = 0.0;
-        this.prev = Set.of();
+        this.prev = new Value[0];
         this.op = "";
     }
-    
+
     // Constructor for internal nodes
     public Value(double data, Set<Value> prev, String op) {
+        this(data, prev.toArray(new Value[0]), op);
+    }
+    private Value(double data, Value[] prev, String op) {
         this.data = data;
         this.grad = 0.0;
         this.prev = prev;
         this.op = op;
     }
+    // Internal node whose data is computed by recompute()
+    private Value(String op, Value... prev) {
+        this(0.0, prev, op);
+        recompute();
+    }
 
     // Add method: create new Value with backprop rule
     public Value add(Value other) {
-        Value result = new Value(this.data + other.data, Set.of(this, other), "+");
+        Value result = new Value("+", this, other);
         result.backward = () -> {
             this.grad += 1.0 * result.grad;
             other.grad += 1.0 * result.grad;
         };
         return result;
     }
-    
+
     // Pow function only for double powers
     public Value pow(double p) {
-        Value result = new Value(Math.pow(this.data, p), Set.of(this), "pow");
+        Value result = new Value(0.0, new Value[]{this}, "pow");
+        result.param = p;
+        result.recompute();
         result.backward = () -> {
             this.grad += (p * Math.pow(this.data, p - 1)) * result.grad;
         };
         return result;
     }
 
+    public Value sub(Value other) {
+        Value result = new Value("-", this, other);
+        result.backward = () -> {
+            this.grad += result.grad;
+            other.grad -= result.grad;
+        };
+        return result;
+    }
+
     // Multiplying with another Value object
     public Value mul(Value other) {
-        Value result = new Value(this.data * other.data, Set.of(this, other), "*");
+        Value result = new Value("*", this, other);
         result.backward = () -> {
             this.grad += other.data * result.grad;
             other.grad += this.data * result.grad;
         };
         return result;
     }
-    
+
     public Value log() {
-        Value result = new Value(Math.log(this.data), Set.of(this), "log");
+        Value result = new Value("log", this);
         result.backward = () -> {
             this.grad += (1.0 / this.data) * result.grad;
         };
@@ -68,10 +94,7 @@ public class Value {
     }
 
     public Value exp() {
-        // Clamp input to avoid overflow/underflow in Math.exp
-        double safeInput = Math.max(-200, Math.min(200, this.data));
-        double expValue = Math.exp(safeInput);
-        Value result = new Value(expValue, Set.of(this), "exp");
+        Value result = new Value("exp", this);
         result.backward = () -> {
             this.grad += result.data * result.grad;
         };
@@ -80,10 +103,7 @@ public class Value {
 
     // Division by another Value object
     public Value div(Value other) {
-        if (other.data == 0) {
-            throw new ArithmeticException("Division by zero");
-        }
-        Value result = new Value(this.data / other.data, Set.of(this, other), "/");
+        Value result = new Value("/", this, other);
         result.backward = () -> {
             this.grad += (1.0 / other.data) * result.grad;
             other.grad += (-this.data / (other.data * other.data)) * result.grad;
@@ -93,41 +113,316 @@ public class Value {
 
     // Activation functions
     public Value relu() {
-        Value result = new Value((this.data < 0) ? 0 : this.data, Set.of(this), "ReLU");
+        Value result = new Value("ReLU", this);
         result.backward = () -> {
             this.grad += ((result.data > 0) ? 1 : 0) * result.grad;
         };
         return result;
     }
     public Value sigmoid() {
-        Value result = new Value(1.0 / (1.0 + Math.exp(-this.data)), Set.of(this), "sigmoid");
+        Value result = new Value("sigmoid", this);
         result.backward = () -> {
             this.grad += result.data * (1 - result.data) * result.grad;
         };
         return result;
     }
 
+    // Fused n-ary ops: one node with a single backward rule over all operands
+
+    // Weighted sum bias + sum_i a_i * b_i (a neuron's pre-activation)
+    public static Value dot(List<Value> a, List<Value> b, Value bias) {
+        int n = a.size();
+        if (b.size() < n) {
+            throw new IllegalArgumentException("Expected at least " + n + " operands, got " + b.size());
+        }
+        // Operands laid out as [bias, a_0..a_n-1, b_0..b_n-1]
+        Value[] operands = new Value[2 * n + 1];
+        operands[0] = bias;
+        for (int i = 0; i < n; i++) {
+            operands[1 + i] = a.get(i);
+            operands[1 + n + i] = b.get(i);
+        }
+        Value result = new Value("dot", operands);
+        result.backward = () -> {
+            operands[0].grad += result.grad;
+            for (int i = 1; i <= n; i++) {
+                operands[i].grad += operands[i + n].data * result.grad;
+                operands[i + n].grad += operands[i].data * result.grad;
+            }
+        };
+        return result;
+    }
+
+    public static Value sum(List<Value> values) {
+        Value[] operands = values.toArray(new Value[0]);
+        Value result = new Value("sum", operands);
+        result.backward = () -> {
+            for (Value v : operands) {
+                v.grad += result.grad;
+            }
+        };
+        return result;
+    }
+
+    public static Value sumOfSquares(List<Value> values) {
+        Value[] operands = values.toArray(new Value[0]);
+        Value result = new Value("sumsq", operands);
+        result.backward = () -> {
+            for (Value v : operands) {
+                v.grad += 2.0 * v.data * result.grad;
+            }
+        };
+        return result;
+    }
+
+    public static Value sumExp(List<Value> values) {
+        Value[] operands = values.toArray(new Value[0]);
+        Value result = new Value("sumexp", operands);
+        result.backward = () -> {
+            for (Value v : operands) {
+                v.grad += Math.exp(v.data) * result.grad;
+            }
+        };
+        return result;
+    }
+
+    // log(sum_i exp(v_i)), shifted by the maximum so it neither overflows nor underflows
+    public static Value logSumExp(List<Value> values) {
+        Value[] operands = values.toArray(new Value[0]);
+        Value result = new Value("logsumexp", operands);
+        result.backward = () -> {
+            // d/dv_i = softmax(v)_i = exp(v_i - logsumexp)
+            for (Value v : operands) {
+                v.grad += Math.exp(v.data - result.data) * result.grad;
+            }
+        };
+        return result;
+    }
+
+    /**
+     * Softmax cross-entropy on raw logits: logsumexp(logits) - logits[target], computed with the
+     * max-subtraction trick. The gradient is the closed form softmax(logits) - onehot(target).
+     */
+    public static Value crossEntropy(List<Value> logits, int target) {
+        if (target < 0 || target >= logits.size()) {
+            throw new IllegalArgumentException("Target " + target + " out of range for " + logits.size() + " classes.");
+        }
+        Value[] operands = logits.toArray(new Value[0]);
+        Value result = new Value(0.0, operands, "crossentropy");
+        result.param = target;
+        result.recompute();
+        result.backward = () -> {
+            double max = Double.NEGATIVE_INFINITY;
+            for (Value v : operands) max = Math.max(max, v.data);
+            double sum = 0.0;
+            for (Value v : operands) sum += Math.exp(v.data - max);
+            for (int i = 0; i < operands.length; i++) {
+                double softmax = Math.exp(operands[i].data - max) / sum;
+                operands[i].grad += (softmax - ((i == target) ? 1.0 : 0.0)) * result.grad;
+            }
+        };
+        return result;
+    }
+
+    /**
+     * Sigmoid binary cross-entropy on a raw logit z: max(z, 0) - z * target + log(1 + exp(-|z|)),
+     * with gradient sigmoid(z) - target.
+     */
+    public static Value binaryCrossEntropy(Value logit, double target) {
+        Value result = new Value(0.0, new Value[]{logit}, "bce");
+        result.param = target;
+        result.recompute();
+        result.backward = () -> {
+            logit.grad += (1.0 / (1.0 + Math.exp(-logit.data)) - target) * result.grad;
+        };
+        return result;
+    }
+
+    // Forward rule of every op, evaluated from the current data of the operands
+    private void recompute() {
+        switch (op) {
+            case "+":
+                data = prev[0].data + prev[1].data;
+                break;
+            case "-":
+                data = prev[0].data - prev[1].data;
+                break;
+            case "*":
+                data = prev[0].data * prev[1].data;
+                break;
+            case "pow":
+                data = Math.pow(prev[0].data, param);
+                break;
+            case "log":
+                data = Math.log(prev[0].data);
+                break;
+            case "exp":
+                data = Math.exp(prev[0].data);
+                break;
+            case "/":
+                if (prev[1].data == 0) {
+                    throw new ArithmeticException("Division by zero");
+                }
+                data = prev[0].data / prev[1].data;
+                break;
+            case "ReLU":
+                data = (prev[0].data < 0) ? 0 : prev[0].data;
+                break;
+            case "sigmoid":
+                data = 1.0 / (1.0 + Math.exp(-prev[0].data));
+                break;
+            case "dot": {
+                int n = (prev.length - 1) / 2;
+                double z = prev[0].data;
+                for (int i = 1; i <= n; i++) {
+                    z += prev[i].data * prev[i + n].data;
+                }
+                data = z;
+                break;
+            }
+            case "sum": {
+                double total = 0.0;
+                for (Value v : prev) total += v.data;
+                data = total;
+                break;
+            }
+            case "sumsq": {
+                double total = 0.0;
+                for (Value v : prev) total += v.data * v.data;
+                data = total;
+                break;
+            }
+            case "sumexp": {
+                double total = 0.0;
+                for (Value v : prev) total += Math.exp(v.data);
+                data = total;
+                break;
+            }
+            case "logsumexp": {
+                double max = Double.NEGATIVE_INFINITY;
+                for (Value v : prev) max = Math.max(max, v.data);
+                double total = 0.0;
+                for (Value v : prev) total += Math.exp(v.data - max);
+                data = max + Math.log(total);
+                break;
+            }
+            case "crossentropy": {
+                double max = Double.NEGATIVE_INFINITY;
+                for (Value v : prev) max = Math.max(max, v.data);
+                double total = 0.0;
+                for (Value v : prev) total += Math.exp(v.data - max);
+                data = max + Math.log(total) - prev[(int) param].data;
+                break;
+            }
+            case "bce": {
+                double z = prev[0].data;
+                data = Math.max(z, 0) - z * param + Math.log1p(Math.exp(-Math.abs(z)));
+                break;
+            }
+            default:
+                throw new IllegalStateException("Cannot recompute op '" + op + "'");
+        }
+    }
+
+    // Graph structure for CompiledGraph, shared without copying
+    String op() {
+        return op;
+    }
+    Value[] operands() {
+        return prev;
+    }
+    double param() {
+        return param;
+    }
+
     // Global backward pass for the whole computational graph
     public void backward() {
-        // Setting grad of the final node
-        this.grad = 1.0;
+        if (tape == null) {
+            tape = new Tape(this);
+        }
+        tape.backward();
+    }
 
-        // Topological order (depth-first)
-        List<Value> topo = new ArrayList<>();
-        buildTopo(this, topo, new HashSet<>());
+    /**
+     * Topological order of the graph rooted at this node, cached for reuse. When a graph is built
+     * once and only the data of its leaves changes between iterations (same topology), replaying
+     * the tape recomputes the forward pass and backpropagates without building or sorting a new graph.
+     */
+    public Tape tape() {
+        if (tape == null) {
+            tape = new Tape(this);
+        }
+        return tape;
+    }
 
-        // Traverse in reverse topo order, calling stored backprop functions
-        for (int i = topo.size() - 1; i >= 0; i--) {
-            topo.get(i).backward.run();
+    public static class Tape {
+        private final Value root;
+        // Topological order, root last
+        private final Value[] order;
+
+        Tape(Value root) {
+            this.root = root;
+            this.order = topologicalOrder(root);
+        }
+
+        // Recomputes the data of every internal node from the current leaf data
+        public void forward() {
+            for (Value v : order) {
+                if (v.prev.length > 0) v.recompute();
+            }
         }
 
+        /**
+         * Backpropagates from the root. Gradients of internal nodes are reset first, leaf gradients
+         * (parameters) accumulate as in a freshly built graph, so they still need zeroing by the caller.
+         */
+        public void backward() {
+            for (Value v : order) {
+                if (v.prev.length > 0) v.grad = 0.0;
+            }
+            // Setting grad of the final node
+            root.grad = 1.0;
+
+            // Traverse in reverse topo order, calling stored backprop functions
+            for (int i = order.length - 1; i >= 0; i--) {
+                order[i].backward.run();
+            }
+        }
+
+        public int size() {
+            return order.length;
+        }
     }
-    private static void buildTopo(Value v, List<Value> topo, Set<Value> seen) {
-        if (!seen.contains(v)) {
-            seen.add(v);
-            for (Value p : v.prev) buildTopo(p, topo, seen);
-            topo.add(v);
+
+    // Iterative depth-first post-order. The visited set is local to the call, so graphs sharing
+    // parameter leaves can be sorted on several threads at once
+    static Value[] topologicalOrder(Value root) {
+        Set<Value> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Value> topo = new ArrayList<>();
+        Value[] stack = new Value[64];
+        int[] next = new int[64];
+        stack[0] = root;
+        visited.add(root);
+        int depth = 1;
+        while (depth > 0) {
+            Value v = stack[depth - 1];
+            if (next[depth - 1] < v.prev.length) {
+                Value p = v.prev[next[depth - 1]++];
+                if (visited.add(p)) {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        next = Arrays.copyOf(next, depth * 2);
+                    }
+                    stack[depth] = p;
+                    next[depth] = 0;
+                    depth++;
+                }
+            } else {
+                topo.add(v);
+                depth--;
+            }
         }
+        return topo.toArray(new Value[0]);
     }
 
     // Overriding default print function
@@ -135,4 +430,4 @@ public class Value {
     public String toString() {
         return "Value(" + data + ")";
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,196 @@
+package core;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Kernels on the preferred SIMD width of the CPU. Only loaded through Kernels when the
+ * jdk.incubator.vector module is enabled. Inner loops run over full vectors with FMA,
+ * the remainder of every row falls back to scalar code.
+ */
+final class VectorKernels extends Kernels {
+    private static final VectorSpecies<Double> D = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> F = FloatVector.SPECIES_PREFERRED;
+
+    // Species of the int8 dot product, in a holder so a CPU without a matching shape cannot disable the other kernels
+    private static final class Int8 {
+        static final VectorSpecies<Integer> I = IntVector.SPECIES_PREFERRED;
+        // As many bytes as I has int lanes, so one load widens into one int vector. Null when there
+        // is no such shape (128-bit int vectors would need 32-bit byte vectors), then the loop is scalar
+        static final VectorSpecies<Byte> B = byteSpecies();
+
+        private static VectorSpecies<Byte> byteSpecies() {
+            int bits = I.length() * Byte.SIZE;
+            return (bits >= 64) ? VectorSpecies.of(byte.class, VectorShape.forBitSize(bits)) : null;
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector";
+    }
+
+    @Override
+    void gemm(double[] a, double[] b, double[] c, int n, int k, int m) {
+        for (int p0 = 0; p0 < k; p0 += BLOCK) {
+            int p1 = Math.min(p0 + BLOCK, k);
+            for (int j0 = 0; j0 < m; j0 += BLOCK) {
+                int j1 = Math.min(j0 + BLOCK, m);
+                for (int i = 0; i < n; i++) {
+                    int cRow = i * m;
+                    for (int p = p0; p < p1; p++) {
+                        double av = a[i * k + p];
+                        if (av == 0.0) continue;
+                        axpy(av, b, p * m, c, cRow, j0, j1);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    void gemmTransA(double[] a, double[] b, double[] c, int n, int k, int m) {
+        for (int p0 = 0; p0 < k; p0 += BLOCK) {
+            int p1 = Math.min(p0 + BLOCK, k);
+            for (int j0 = 0; j0 < m; j0 += BLOCK) {
+                int j1 = Math.min(j0 + BLOCK, m);
+                for (int i = 0; i < n; i++) {
+                    int bRow = i * m;
+                    for (int p = p0; p < p1; p++) {
+                        double av = a[i * k + p];
+                        if (av == 0.0) continue;
+                        axpy(av, b, bRow, c, p * m, j0, j1);
+                    }
+                }
+            }
+        }
+    }
+
+    // y[yOffset + j] += alpha * x[xOffset + j] for j in [from, to)
+    private static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int from, int to) {
+        DoubleVector va = DoubleVector.broadcast(D, alpha);
+        int j = from;
+        for (int bound = from + D.loopBound(to - from); j < bound; j += D.length()) {
+            DoubleVector vx = DoubleVector.fromArray(D, x, xOffset + j);
+            DoubleVector vy = DoubleVector.fromArray(D, y, yOffset + j);
+            vx.fma(va, vy).intoArray(y, yOffset + j);
+        }
+        for (; j < to; j++) {
+            y[yOffset + j] += alpha * x[xOffset + j];
+        }
+    }
+
+    @Override
+    void gemmTransB(double[] a, double[] b, double[] c, int n, int k, int m) {
+        for (int i0 = 0; i0 < n; i0 += BLOCK) {
+            int i1 = Math.min(i0 + BLOCK, n);
+            for (int p0 = 0; p0 < k; p0 += BLOCK) {
+                int p1 = Math.min(p0 + BLOCK, k);
+                for (int i = i0; i < i1; i++) {
+                    for (int p = p0; p < p1; p++) {
+                        c[i * k + p] += dot(a, i * m, b, p * m, m);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(D);
+        int i = 0;
+        for (int bound = D.loopBound(length); i < bound; i += D.length()) {
+            acc = DoubleVector.fromArray(D, a, aOffset + i).fma(DoubleVector.fromArray(D, b, bOffset + i), acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+    @Override
+    float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector acc = FloatVector.zero(F);
+        int i = 0;
+        for (int bound = F.loopBound(length); i < bound; i += F.length()) {
+            acc = FloatVector.fromArray(F, a, aOffset + i).fma(FloatVector.fromArray(F, b, bOffset + i), acc);
+        }
+        float sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+    @Override
+    int dot(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        VectorSpecies<Byte> B = Int8.B;
+        int sum = 0;
+        int i = 0;
+        if (B != null) {
+            IntVector acc = IntVector.zero(Int8.I);
+            for (int bound = B.loopBound(length); i < bound; i += B.length()) {
+                IntVector x = (IntVector) ByteVector.fromArray(B, a, aOffset + i).convertShape(VectorOperators.B2I, Int8.I, 0);
+                IntVector y = (IntVector) ByteVector.fromArray(B, b, bOffset + i).convertShape(VectorOperators.B2I, Int8.I, 0);
+                acc = acc.add(x.mul(y));
+            }
+            sum = acc.reduceLanes(VectorOperators.ADD);
+        }
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    void addBias(double[] x, double[] bias, double[] out, int n, int m) {
+        int bound = D.loopBound(m);
+        for (int i = 0; i < n; i++) {
+            int row = i * m;
+            int j = 0;
+            for (; j < bound; j += D.length()) {
+                DoubleVector.fromArray(D, x, row + j).add(DoubleVector.fromArray(D, bias, j)).intoArray(out, row + j);
+            }
+            for (; j < m; j++) {
+                out[row + j] = x[row + j] + bias[j];
+            }
+        }
+    }
+    @Override
+    void relu(double[] x, double[] out) {
+        int i = 0;
+        for (int bound = D.loopBound(x.length); i < bound; i += D.length()) {
+            DoubleVector.fromArray(D, x, i).max(0.0).intoArray(out, i);
+        }
+        for (; i < x.length; i++) {
+            out[i] = (x[i] < 0) ? 0 : x[i];
+        }
+    }
+    @Override
+    void reluBackward(double[] out, double[] gradOut, double[] grad) {
+        int i = 0;
+        for (int bound = D.loopBound(out.length); i < bound; i += D.length()) {
+            VectorMask<Double> active = DoubleVector.fromArray(D, out, i).compare(VectorOperators.GT, 0.0);
+            DoubleVector g = DoubleVector.fromArray(D, grad, i);
+            g.add(DoubleVector.fromArray(D, gradOut, i), active).intoArray(grad, i);
+        }
+        for (; i < out.length; i++) {
+            if (out[i] > 0) grad[i] += gradOut[i];
+        }
+    }
+    @Override
+    void exp(double[] x, double[] out) {
+        int i = 0;
+        for (int bound = D.loopBound(x.length); i < bound; i += D.length()) {
+            DoubleVector.fromArray(D, x, i).lanewise(VectorOperators.EXP).intoArray(out, i);
+        }
+        for (; i < x.length; i++) {
+            out[i] = Math.exp(x[i]);
+        }
+    }
+}
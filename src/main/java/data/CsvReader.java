@@ -0,0 +1,115 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Streaming numeric CSV reader working directly on bytes.
+ *
+ * Rows are parsed from a fixed byte buffer into a reusable double[] without creating
+ * Strings, except for numbers with a fraction or exponent, which go through
+ * Double.parseDouble to keep results exact.
+ */
+class CsvReader implements AutoCloseable {
+    private final InputStream in;
+    private final byte[] buffer = new byte[1 << 16];
+    private int pos = 0;
+    private int limit = 0;
+    private double[] fields = new double[128];
+    private final StringBuilder slow = new StringBuilder();
+
+    CsvReader(InputStream in) {
+        this.in = in;
+    }
+
+    // Fields of the last row returned by next()
+    double[] fields() {
+        return fields;
+    }
+
+    // Parses the next non-empty line, returns its number of fields or -1 at the end of input
+    int next() throws IOException {
+        while (true) {
+            int b = peek();
+            if (b < 0) return -1;
+            if (b == '\n' || b == '\r' || b == ' ' || b == '\t') {
+                pos++;
+                continue;
+            }
+            break;
+        }
+        int count = 0;
+        while (true) {
+            if (count == fields.length) {
+                fields = Arrays.copyOf(fields, fields.length * 2);
+            }
+            fields[count++] = parseNumber();
+            skipSpaces();
+            int b = peek();
+            if (b == ',') {
+                pos++;
+                skipSpaces();
+                continue;
+            }
+            if (b == '\r') pos++;
+            if (peek() == '\n') pos++;
+            return count;
+        }
+    }
+
+    private double parseNumber() throws IOException {
+        boolean negative = false;
+        int b = peek();
+        if (b == '-' || b == '+') {
+            negative = (b == '-');
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        // Up to 15 digits are exact in a double
+        while (digits < 15 && (b = peek()) >= '0' && b <= '9') {
+            mantissa = mantissa * 10 + (b - '0');
+            digits++;
+            pos++;
+        }
+        b = peek();
+        if (b == '.' || b == 'e' || b == 'E' || (b >= '0' && b <= '9')) {
+            // Rare path: fractions, exponents and long integers are parsed exactly from text
+            slow.setLength(0);
+            if (negative) slow.append('-');
+            if (digits > 0) slow.append(mantissa);
+            while ((b = peek()) >= 0 && b != ',' && b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+                slow.append((char) b);
+                pos++;
+            }
+            return Double.parseDouble(slow.toString());
+        }
+        if (digits == 0) {
+            throw new IOException("Expected a number, found '" + (b < 0 ? "EOF" : String.valueOf((char) b)) + "'");
+        }
+        return negative ? -mantissa : mantissa;
+    }
+
+    private void skipSpaces() throws IOException {
+        int b;
+        while ((b = peek()) == ' ' || b == '\t') pos++;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            pos = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[pos];
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
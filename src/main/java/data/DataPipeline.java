@@ -0,0 +1,241 @@
+package data;
+
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import data.DigitDataLoader.BatchIterator;
+import data.DigitDataLoader.DataSet;
+
+/**
+ * Feeds training batches from an in-memory DataSet or from a CSV file streamed from disk.
+ *
+ * For every epoch a background producer thread shuffles the samples (when a seed is set), cuts
+ * them into batches, applies the optional augmentation and packs the features into flat row-major
+ * arrays, handing the batches over through a bounded queue so the training thread never waits on
+ * data preparation. Streamed files are shuffled within windows of shuffleWindow samples.
+ */
+public class DataPipeline {
+    /**
+     * Modifies one sample of a batch in place (e.g. noise or pixel shifts). Runs on the producer
+     * thread; the source data is never modified.
+     */
+    @FunctionalInterface
+    public interface Augmentation {
+        void apply(double[] features, int offset, int length, Random random);
+    }
+
+    public static class Batch {
+        // rows() x numFeatures values, row-major
+        public final double[] features;
+        public final int[] labels;
+        public final int numFeatures;
+
+        public Batch(double[] features, int[] labels, int numFeatures) {
+            this.features = features;
+            this.labels = labels;
+            this.numFeatures = numFeatures;
+        }
+
+        public int rows() {
+            return labels.length;
+        }
+    }
+
+    private final DataSet data;
+    private final Path path;
+    private final double scale;
+    private int batchSize = 1;
+    private boolean shuffle = false;
+    private long seed;
+    private Augmentation augmentation = null;
+    private int prefetch = 4;
+    private int shuffleWindow = 4096;
+
+    public DataPipeline(DataSet data) {
+        this(data, null, 0);
+    }
+
+    // Streams the CSV file (features followed by the label, see DigitDataLoader) once per epoch
+    public static DataPipeline fromFile(Path path, double scale) {
+        return new DataPipeline(null, path, scale);
+    }
+
+    private DataPipeline(DataSet data, Path path, double scale) {
+        this.data = data;
+        this.path = path;
+        this.scale = scale;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+    }
+    public int batchSize() {
+        return batchSize;
+    }
+
+    // Shuffle the samples every epoch, reproducibly for a given seed
+    public void setShuffle(long seed) {
+        this.shuffle = true;
+        this.seed = seed;
+    }
+    public boolean isShuffled() {
+        return shuffle;
+    }
+    public long seed() {
+        return seed;
+    }
+
+    public void setAugmentation(Augmentation augmentation) {
+        this.augmentation = augmentation;
+    }
+
+    // Number of batches prepared ahead of the consumer
+    public void setPrefetch(int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("Prefetch must be at least 1 batch.");
+        }
+        this.prefetch = prefetch;
+    }
+
+    // Samples shuffled together when streaming from a file
+    public void setShuffleWindow(int shuffleWindow) {
+        if (shuffleWindow < 1) {
+            throw new IllegalArgumentException("Shuffle window must be at least 1 sample.");
+        }
+        this.shuffleWindow = shuffleWindow;
+    }
+
+    /**
+     * Starts the producer for one pass over the data. The returned iterator must be closed
+     * (or fully consumed) to release the producer thread and, when streaming, the file.
+     *
+     * @param epoch Epoch number, mixed into the seed so every epoch gets a different order.
+     */
+    public Epoch epoch(int epoch) {
+        Random random = new Random(shuffle ? seed * 31 + epoch : epoch);
+        return new Epoch(this, random);
+    }
+
+    public static class Epoch implements Iterator<Batch>, AutoCloseable {
+        // End of the epoch marker
+        private static final Batch END = new Batch(new double[0], new int[0], 0);
+
+        private final BlockingQueue<Batch> queue;
+        private final Thread producer;
+        private volatile Throwable error;
+        private Batch next;
+        private boolean done = false;
+
+        Epoch(DataPipeline pipeline, Random random) {
+            this.queue = new ArrayBlockingQueue<>(pipeline.prefetch);
+            this.producer = new Thread(() -> {
+                try {
+                    if (pipeline.data != null) {
+                        pipeline.produce(pipeline.data, random, this);
+                    } else {
+                        try (BatchIterator windows = DigitDataLoader.batches(pipeline.path, pipeline.windowSize(), pipeline.scale)) {
+                            while (windows.hasNext()) {
+                                pipeline.produce(windows.next(), random, this);
+                            }
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Throwable e) {
+                    error = e;
+                }
+                try {
+                    queue.put(END);
+                } catch (InterruptedException e) {
+                    // Closed by the consumer
+                }
+            }, "data-pipeline");
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (done) return false;
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Interrupted while waiting for data", e);
+                }
+                if (next == END) {
+                    done = true;
+                    next = null;
+                    if (error != null) {
+                        throw new RuntimeException("Error preparing data: " + error.getMessage(), error);
+                    }
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Batch next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Batch batch = next;
+            next = null;
+            return batch;
+        }
+
+        @Override
+        public void close() {
+            done = true;
+            producer.interrupt();
+            queue.clear();
+        }
+    }
+
+    // Streaming windows hold whole batches, so only the last batch of an epoch can be partial
+    private int windowSize() {
+        int batches = Math.max(1, (shuffleWindow + batchSize - 1) / batchSize);
+        return batches * batchSize;
+    }
+
+    private void produce(DataSet source, Random random, Epoch epoch) throws InterruptedException {
+        int n = source.size();
+        int numFeatures = source.numFeatures();
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        if (shuffle) {
+            // Fisher-Yates
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }
+        for (int from = 0; from < n; from += batchSize) {
+            int rows = Math.min(batchSize, n - from);
+            double[] features = new double[rows * numFeatures];
+            int[] labels = new int[rows];
+            for (int r = 0; r < rows; r++) {
+                int sample = order[from + r];
+                System.arraycopy(source.images[sample], 0, features, r * numFeatures, numFeatures);
+                labels[r] = source.labels[sample];
+                if (augmentation != null) {
+                    augmentation.apply(features, r * numFeatures, numFeatures, random);
+                }
+            }
+            epoch.queue.put(new Batch(features, labels, numFeatures));
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package data;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+import data.DigitDataLoader.DataSet;
+
+/**
+ * Binary cache of parsed datasets, so repeated runs skip text parsing.
+ *
+ * A cache file holds a header (magic "JNCD", version, rows, features, scale, source length and
+ * CRC32C of the source bytes) followed by a contiguous little-endian double feature block and an
+ * int label block. It is memory-mapped on load and rebuilt whenever the source bytes change.
+ */
+public class DataSetCache {
+    private static final int MAGIC = 0x44434E4A; // "JNCD" in little-endian byte order
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private final Path directory;
+
+    public DataSetCache(Path directory) {
+        this.directory = directory;
+    }
+
+    // Cache under ${jneural.cache.dir}, defaulting to a directory in java.io.tmpdir
+    public static DataSetCache defaultCache() {
+        String dir = System.getProperty("jneural.cache.dir");
+        if (dir == null) {
+            dir = Paths.get(System.getProperty("java.io.tmpdir"), "j-neural-core", "data-cache").toString();
+        }
+        return new DataSetCache(Paths.get(dir));
+    }
+
+    /**
+     * Returns the cached dataset for the given source bytes, parsing the CSV and writing
+     * the cache on a miss. Failing to write the cache does not fail the load.
+     *
+     * @param name Name of the source (e.g. its resource path), used for the cache file name.
+     */
+    public DataSet load(String name, byte[] source, double scale) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(source);
+        long hash = crc.getValue();
+        Path file = cacheFile(name);
+
+        if (Files.exists(file)) {
+            try {
+                DataSet cached = read(file, source.length, hash, scale);
+                if (cached != null) {
+                    return cached;
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable data cache " + file + ": " + e.getMessage());
+            }
+        }
+
+        DataSet data = DigitDataLoader.load(new ByteArrayInputStream(source), scale);
+        try {
+            write(file, data, source.length, hash, scale);
+        } catch (IOException e) {
+            System.err.println("Error writing data cache: " + e.getMessage());
+        }
+        return data;
+    }
+
+    private Path cacheFile(String name) {
+        String fileName = name.replaceAll("[^A-Za-z0-9._-]", "_");
+        return directory.resolve(fileName + ".cache");
+    }
+
+    // Null if the cache was built from a different source or scale
+    private static DataSet read(Path file, long sourceLength, long sourceHash, double scale) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Data cache is larger than 2 GB");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            int rows = buffer.getInt();
+            int features = buffer.getInt();
+            double cachedScale = buffer.getDouble();
+            long cachedLength = buffer.getLong();
+            long cachedHash = buffer.getLong();
+            if (cachedScale != scale || cachedLength != sourceLength || cachedHash != sourceHash) {
+                return null;
+            }
+            if (rows < 0 || features < 0 || buffer.limit() != cacheSize(rows, features)) {
+                throw new IOException("Data cache has unexpected size");
+            }
+
+            buffer.position(HEADER_SIZE);
+            double[][] images = new double[rows][features];
+            DoubleBuffer featureBlock = buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+            for (int i = 0; i < rows; i++) {
+                featureBlock.get(images[i]);
+            }
+            int[] labels = new int[rows];
+            // No overflow, the size matched a mapped file of at most 2 GB
+            buffer.position(HEADER_SIZE + rows * features * Double.BYTES);
+            buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer().get(labels);
+            return new DataSet(images, labels);
+        }
+    }
+
+    // Bytes of a cache file, in long so large data sets cannot overflow
+    private static long cacheSize(int rows, int features) {
+        return HEADER_SIZE + (long) rows * features * Double.BYTES + (long) rows * Integer.BYTES;
+    }
+
+    // Written to a temporary file and moved into place, so concurrent runs never read a partial cache
+    private void write(Path file, DataSet data, long sourceLength, long sourceHash, double scale) throws IOException {
+        int rows = data.size();
+        int features = data.numFeatures();
+        long size = cacheSize(rows, features);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Data set of " + rows + " x " + features + " is too large to cache (" + size + " bytes, at most 2 GB)");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(rows).putInt(features)
+                .putDouble(scale).putLong(sourceLength).putLong(sourceHash);
+        buffer.position(HEADER_SIZE);
+        for (double[] image : data.images) {
+            for (double d : image) {
+                buffer.putDouble(d);
+            }
+        }
+        for (int label : data.labels) {
+            buffer.putInt(label);
+        }
+        buffer.flip();
+
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) channel.write(buffer);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,13 +1,19 @@
 package data;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 public class DigitDataLoader {
+    // Digit pixel counts are 0-16, dividing by 16 normalizes them to [0, 1]
+    public static final double DIGIT_SCALE = 16.0;
+
     public static class DataSet {
         public final double[][] images;
         public final int[] labels;
@@ -16,47 +22,142 @@ public class DigitDataLoader {
             this.images = images;
             this.labels = labels;
         }
+
+        public int size() {
+            return labels.length;
+        }
+        public int numFeatures() {
+            return images.length == 0 ? 0 : images[0].length;
+        }
     }
 
     public static DataSet load(String resourcePath) throws Exception {
-        List<double[]> imageList = new ArrayList<>();
-        List<Integer> labelList = new ArrayList<>();
-        
+        return load(resourcePath, DIGIT_SCALE);
+    }
+
+    /**
+     * Loads a classpath CSV resource where every row holds the features followed by an integer label.
+     * The number of features is taken from the first row; rows with a different field count are skipped.
+     * Parsed data is kept in the DataSetCache and reused until the resource changes, unless the
+     * jneural.data.cache system property is set to false.
+     *
+     * @param scale Every feature is divided by scale while parsing.
+     */
+    public static DataSet load(String resourcePath, double scale) throws IOException {
         InputStream is = DigitDataLoader.class.getResourceAsStream(resourcePath);
         if (is == null) {
             throw new IOException("Resource not found: " + resourcePath);
         }
-        BufferedReader reader = new BufferedReader(new InputStreamReader(is));
+        if ("false".equals(System.getProperty("jneural.data.cache"))) {
+            return load(is, scale);
+        }
+        byte[] source;
+        try (is) {
+            source = is.readAllBytes();
+        }
+        return DataSetCache.defaultCache().load(resourcePath, source, scale);
+    }
+
+    public static DataSet load(Path path, double scale) throws IOException {
+        return load(Files.newInputStream(path), scale);
+    }
+
+    // Single streaming pass: bytes are parsed, normalized and stored straight into the primitive arrays
+    public static DataSet load(InputStream is, double scale) throws IOException {
+        try (CsvReader reader = new CsvReader(is)) {
+            List<double[]> imageList = new ArrayList<>();
+            int[] labels = new int[1024];
+            int numFields = -1;
+            int count;
+            while ((count = reader.next()) >= 0) {
+                if (numFields < 0) numFields = count;
+                if (count != numFields) continue;
+
+                if (imageList.size() == labels.length) {
+                    labels = Arrays.copyOf(labels, labels.length * 2);
+                }
+                labels[imageList.size()] = (int) reader.fields()[count - 1];
+                imageList.add(readFeatures(reader.fields(), count - 1, scale));
+            }
+            return new DataSet(imageList.toArray(new double[0][]), Arrays.copyOf(labels, imageList.size()));
+        }
+    }
+
+    /**
+     * Streams a CSV file in batches of at most batchSize rows, so datasets larger than the heap
+     * can be consumed batch by batch. The iterator must be closed to release the file.
+     */
+    public static BatchIterator batches(Path path, int batchSize, double scale) throws IOException {
+        return new BatchIterator(new CsvReader(Files.newInputStream(path)), batchSize, scale);
+    }
 
-        // Reading the file line by line
-        String line;
-        while ((line = reader.readLine()) != null) {
-            String[] parts = line.trim().split(",");
-            if (parts.length != 65) continue;
+    public static class BatchIterator implements Iterator<DataSet>, AutoCloseable {
+        private final CsvReader reader;
+        private final int batchSize;
+        private final double scale;
+        private int numFields = -1;
+        private DataSet next;
+
+        BatchIterator(CsvReader reader, int batchSize, double scale) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1.");
+            }
+            this.reader = reader;
+            this.batchSize = batchSize;
+            this.scale = scale;
+        }
 
-            // Converting to double arrays
-            // Assuming the first 64 parts are pixel values and the last part is the label
-            double[] image = new double[64];
-            for (int i = 0; i < 64; i++) {
-                image[i] = Double.parseDouble(parts[i]);
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = readBatch();
             }
-            int label = Integer.parseInt(parts[64]);
+            return next != null;
+        }
 
-            imageList.add(image);
-            labelList.add(label);
+        @Override
+        public DataSet next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            DataSet batch = next;
+            next = null;
+            return batch;
         }
-        
-        // Converting lists to plain arrays for easier handling
-        double[][] images = imageList.toArray(new double[0][64]);
-        int[] labels = labelList.stream().mapToInt(Integer::intValue).toArray();
 
-        // Normalizing image values to [0, 1] for better training
-        for (int i = 0; i < images.length; i++) {
-            for (int j = 0; j < images[i].length; j++) {
-                images[i][j] /= 16.0;
+        private DataSet readBatch() {
+            double[][] images = new double[batchSize][];
+            int[] labels = new int[batchSize];
+            int rows = 0;
+            try {
+                int count;
+                while (rows < batchSize && (count = reader.next()) >= 0) {
+                    if (numFields < 0) numFields = count;
+                    if (count != numFields) continue;
+                    labels[rows] = (int) reader.fields()[count - 1];
+                    images[rows++] = readFeatures(reader.fields(), count - 1, scale);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Error reading data: " + e.getMessage(), e);
             }
+            if (rows == 0) return null;
+            if (rows < batchSize) {
+                return new DataSet(Arrays.copyOf(images, rows), Arrays.copyOf(labels, rows));
+            }
+            return new DataSet(images, labels);
         }
 
-        return new DataSet(images, labels);
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    private static double[] readFeatures(double[] fields, int numFeatures, double scale) {
+        double[] image = new double[numFeatures];
+        for (int i = 0; i < numFeatures; i++) {
+            image[i] = fields[i] / scale;
+        }
+        return image;
     }
 }
@@ -0,0 +1,115 @@
+package engine;
+
+import core.Value;
+
+/**
+ * Adam: per-parameter step sizes from bias-corrected running averages of the gradient and of
+ * its square. Weight decay is added to the gradient (L2) unless it is decoupled, see AdamW.
+ */
+public class Adam implements Optimizer {
+    private double learningRate;
+    private final double beta1;
+    private final double beta2;
+    private final double epsilon;
+    private final double weightDecay;
+    private final boolean decoupled;
+    private double[] m;
+    private double[] v;
+    private int t = 0;
+
+    public Adam(double learningRate) {
+        this(learningRate, 0.9, 0.999, 1e-8, 0.0);
+    }
+
+    public Adam(double learningRate, double beta1, double beta2, double epsilon, double weightDecay) {
+        this(learningRate, beta1, beta2, epsilon, weightDecay, false);
+    }
+
+    Adam(double learningRate, double beta1, double beta2, double epsilon, double weightDecay, boolean decoupled) {
+        if (learningRate <= 0) {
+            throw new IllegalArgumentException("Learning rate must be positive.");
+        }
+        if (beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) {
+            throw new IllegalArgumentException("Betas must be in [0, 1).");
+        }
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("Epsilon must be positive.");
+        }
+        if (weightDecay < 0) {
+            throw new IllegalArgumentException("Weight decay must not be negative.");
+        }
+        this.learningRate = learningRate;
+        this.beta1 = beta1;
+        this.beta2 = beta2;
+        this.epsilon = epsilon;
+        this.weightDecay = weightDecay;
+        this.decoupled = decoupled;
+    }
+
+    @Override
+    public void step(Value[] params) {
+        if (m == null || m.length != params.length) {
+            m = new double[params.length];
+            v = new double[params.length];
+            t = 0;
+        }
+        t++;
+        // Bias corrections folded into the step size
+        double stepSize = learningRate * Math.sqrt(1 - Math.pow(beta2, t)) / (1 - Math.pow(beta1, t));
+        double epsilonHat = epsilon * Math.sqrt(1 - Math.pow(beta2, t));
+        for (int i = 0; i < params.length; i++) {
+            Value p = params[i];
+            double g = p.grad;
+            if (decoupled) {
+                p.data -= learningRate * weightDecay * p.data;
+            } else {
+                g += weightDecay * p.data;
+            }
+            m[i] = beta1 * m[i] + (1 - beta1) * g;
+            v[i] = beta2 * v[i] + (1 - beta2) * g * g;
+            p.data -= stepSize * m[i] / (Math.sqrt(v[i]) + epsilonHat);
+        }
+    }
+
+    @Override
+    public double getLearningRate() {
+        return learningRate;
+    }
+    @Override
+    public double getWeightDecay() {
+        return weightDecay;
+    }
+    @Override
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    @Override
+    public void reset() {
+        m = null;
+        v = null;
+        t = 0;
+    }
+
+    // First and second moments, then the step count
+    @Override
+    public double[][] getState() {
+        if (m == null) {
+            return new double[0][];
+        }
+        return new double[][]{m.clone(), v.clone(), {t}};
+    }
+    @Override
+    public void setState(double[][] state) {
+        if (state.length == 0) {
+            reset();
+            return;
+        }
+        if (state.length != 3 || state[0].length != state[1].length || state[2].length != 1) {
+            throw new IllegalArgumentException("Expected the moments and step count of Adam.");
+        }
+        m = state[0].clone();
+        v = state[1].clone();
+        t = (int) state[2][0];
+    }
+}
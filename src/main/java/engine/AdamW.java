@@ -0,0 +1,15 @@
+package engine;
+
+/**
+ * Adam with decoupled weight decay: the weights shrink by lr * weightDecay * w directly
+ * instead of the decay term passing through the adaptive moment estimates.
+ */
+public class AdamW extends Adam {
+    public AdamW(double learningRate, double weightDecay) {
+        this(learningRate, 0.9, 0.999, 1e-8, weightDecay);
+    }
+
+    public AdamW(double learningRate, double beta1, double beta2, double epsilon, double weightDecay) {
+        super(learningRate, beta1, beta2, epsilon, weightDecay, true);
+    }
+}
@@ -0,0 +1,149 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Training state after a completed epoch: parameters, optimizer state, learning rate, data
+ * shuffle seed and the best validation loss so far, enough to resume the run (see Trainer.resume).
+ *
+ * File layout (little-endian): magic "JNCK", version, CRC32 of the rest of the file, then the
+ * fields in declaration order, arrays prefixed with their length.
+ */
+public final class Checkpoint {
+    public static final int MAGIC = 0x4B434E4A; // "JNCK" in little-endian byte order
+    public static final int VERSION = 1;
+
+    // Number of completed epochs, i.e. the first epoch to run when resuming
+    public final int epoch;
+    public final long seed;
+    public final double learningRate;
+    // Validation loss after this epoch and the best one of the run, NaN without validation data
+    public final double validationLoss;
+    public final double bestValidationLoss;
+    public final int[] layerSizes;
+    public final double[] parameters;
+    // Class name of the optimizer the state belongs to
+    public final String optimizer;
+    public final double[][] optimizerState;
+
+    public Checkpoint(int epoch, long seed, double learningRate, double validationLoss, double bestValidationLoss,
+                      int[] layerSizes, double[] parameters, String optimizer, double[][] optimizerState) {
+        this.epoch = epoch;
+        this.seed = seed;
+        this.learningRate = learningRate;
+        this.validationLoss = validationLoss;
+        this.bestValidationLoss = bestValidationLoss;
+        this.layerSizes = layerSizes;
+        this.parameters = parameters;
+        this.optimizer = optimizer;
+        this.optimizerState = optimizerState;
+    }
+
+    // Writes to a temporary file next to path and atomically moves it into place, like ModelFile
+    public void write(Path path) throws IOException {
+        byte[] name = optimizer.getBytes(StandardCharsets.UTF_8);
+        int size = 4 + 8 + 8 + 8 + 8 + 4 + 4 * layerSizes.length + 4 + 8 * parameters.length + 4 + name.length + 4;
+        for (double[] state : optimizerState) {
+            size += 4 + 8 * state.length;
+        }
+        ByteBuffer body = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        body.putInt(epoch).putLong(seed).putDouble(learningRate).putDouble(validationLoss).putDouble(bestValidationLoss);
+        body.putInt(layerSizes.length);
+        for (int s : layerSizes) {
+            body.putInt(s);
+        }
+        putArray(body, parameters);
+        body.putInt(name.length).put(name);
+        body.putInt(optimizerState.length);
+        for (double[] state : optimizerState) {
+            putArray(body, state);
+        }
+        body.flip();
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt((int) crc.getValue()).flip();
+
+        Path absolute = path.toAbsolutePath();
+        Path tmp = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (header.hasRemaining()) channel.write(header);
+            while (body.hasRemaining()) channel.write(body);
+            channel.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Checkpoint read(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint file: " + path);
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int checksum = buffer.getInt();
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Checkpoint checksum mismatch: " + path);
+        }
+        try {
+            int epoch = buffer.getInt();
+            long seed = buffer.getLong();
+            double learningRate = buffer.getDouble();
+            double validationLoss = buffer.getDouble();
+            double bestValidationLoss = buffer.getDouble();
+            int[] layerSizes = new int[length(buffer, 4)];
+            for (int i = 0; i < layerSizes.length; i++) {
+                layerSizes[i] = buffer.getInt();
+            }
+            double[] parameters = getArray(buffer);
+            byte[] name = new byte[length(buffer, 1)];
+            buffer.get(name);
+            double[][] optimizerState = new double[length(buffer, 4)][];
+            for (int i = 0; i < optimizerState.length; i++) {
+                optimizerState[i] = getArray(buffer);
+            }
+            return new Checkpoint(epoch, seed, learningRate, validationLoss, bestValidationLoss, layerSizes, parameters,
+                    new String(name, StandardCharsets.UTF_8), optimizerState);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt checkpoint file: " + path, e);
+        }
+    }
+
+    private static void putArray(ByteBuffer buffer, double[] values) {
+        buffer.putInt(values.length);
+        for (double v : values) {
+            buffer.putDouble(v);
+        }
+    }
+    private static double[] getArray(ByteBuffer buffer) throws IOException {
+        double[] values = new double[length(buffer, 8)];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * values.length);
+        return values;
+    }
+    // Array length read from the buffer, checked against the bytes left
+    private static int length(ByteBuffer buffer, int elementBytes) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0 || (long) length * elementBytes > buffer.remaining()) {
+            throw new IOException("Corrupt checkpoint length " + length);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,109 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import core.ModelFile;
+
+/**
+ * Writes training checkpoints into a directory on a background thread, so the training loop
+ * only pays for copying the state (see Trainer.setCheckpointer).
+ *
+ * Files: latest.ckpt after every `every` epochs (and the last one), best.ckpt and best.model
+ * (loadable with MLP.loadModel) whenever the validation loss improves. Every file is replaced
+ * atomically, so a run killed mid-write still leaves the previous checkpoint intact.
+ */
+public class Checkpointer implements AutoCloseable {
+    private final Path directory;
+    private int every = 1;
+    private boolean keepBest = true;
+    private final ExecutorService writer;
+    private Future<?> pending = null;
+
+    public Checkpointer(Path directory) {
+        this.directory = directory;
+        this.writer = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Write latest.ckpt every n epochs
+    public void setEvery(int every) {
+        if (every < 1) {
+            throw new IllegalArgumentException("Checkpoint interval must be at least 1 epoch.");
+        }
+        this.every = every;
+    }
+    public int every() {
+        return every;
+    }
+
+    // Keep best.ckpt and best.model for the lowest validation loss (default true)
+    public void setKeepBest(boolean keepBest) {
+        this.keepBest = keepBest;
+    }
+    public boolean keepBest() {
+        return keepBest;
+    }
+
+    public Path latestPath() {
+        return directory.resolve("latest.ckpt");
+    }
+    public Path bestPath() {
+        return directory.resolve("best.ckpt");
+    }
+    public Path bestModelPath() {
+        return directory.resolve("best.model");
+    }
+
+    /**
+     * Queues the checkpoint for writing. The checkpoint must not be modified afterwards; writes
+     * happen in submission order.
+     *
+     * @param latest Write it as latest.ckpt.
+     * @param best Write it as best.ckpt and best.model.
+     */
+    public synchronized void save(Checkpoint checkpoint, boolean latest, boolean best) {
+        if (!latest && !best) return;
+        pending = writer.submit(() -> {
+            try {
+                Files.createDirectories(directory);
+                if (latest) {
+                    checkpoint.write(latestPath());
+                }
+                if (best) {
+                    checkpoint.write(bestPath());
+                    ModelFile.write(bestModelPath(), checkpoint.layerSizes, checkpoint.parameters, ModelFile.DType.FLOAT64);
+                }
+            } catch (IOException e) {
+                System.err.println("Error writing checkpoint: " + e.getMessage());
+            }
+        });
+    }
+
+    // Blocks until all queued checkpoints are on disk
+    public synchronized void flush() {
+        if (pending == null) return;
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Error writing checkpoint: " + e.getCause().getMessage());
+        }
+        pending = null;
+    }
+
+    @Override
+    public void close() {
+        flush();
+        writer.shutdown();
+    }
+}
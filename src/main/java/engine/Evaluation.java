@@ -0,0 +1,133 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of evaluating a model on a labelled dataset (see Evaluator): summed cross-entropy,
+ * accuracy, the confusion matrix and per-class precision and recall.
+ *
+ * Binary models (a single sigmoid output) are reported as two classes, 0 and 1.
+ */
+public class Evaluation {
+    public static class Misclassified {
+        public final int sample;
+        public final int predicted;
+        public final int actual;
+        // Output probabilities of the model for the sample
+        public final double[] probabilities;
+
+        Misclassified(int sample, int predicted, int actual, double[] probabilities) {
+            this.sample = sample;
+            this.predicted = predicted;
+            this.actual = actual;
+            this.probabilities = probabilities;
+        }
+    }
+
+    private final int numClasses;
+    private int samples = 0;
+    private int correct = 0;
+    private double loss = 0.0;
+    // confusion[actual][predicted]
+    private final int[][] confusion;
+    // Filled only when requested from the Evaluator, validation passes skip the copies
+    private final boolean collectMisclassified;
+    private final List<Misclassified> misclassified = new ArrayList<>();
+
+    Evaluation(int numClasses, boolean collectMisclassified) {
+        this.numClasses = numClasses;
+        this.collectMisclassified = collectMisclassified;
+        this.confusion = new int[numClasses][numClasses];
+    }
+
+    void add(int sample, int predicted, int actual, double sampleLoss, double[] out, int numOutputs) {
+        samples++;
+        loss += sampleLoss;
+        confusion[actual][predicted]++;
+        if (predicted == actual) {
+            correct++;
+        } else if (collectMisclassified) {
+            double[] probabilities = new double[numOutputs];
+            System.arraycopy(out, 0, probabilities, 0, numOutputs);
+            misclassified.add(new Misclassified(sample, predicted, actual, probabilities));
+        }
+    }
+
+    // Adds the counts of a later chunk, keeping misclassified samples in dataset order
+    void merge(Evaluation other) {
+        samples += other.samples;
+        correct += other.correct;
+        loss += other.loss;
+        for (int i = 0; i < numClasses; i++) {
+            for (int j = 0; j < numClasses; j++) {
+                confusion[i][j] += other.confusion[i][j];
+            }
+        }
+        misclassified.addAll(other.misclassified);
+    }
+
+    public int numClasses() {
+        return numClasses;
+    }
+    public int samples() {
+        return samples;
+    }
+    public int correct() {
+        return correct;
+    }
+
+    // Cross-entropy summed over the samples
+    public double loss() {
+        return loss;
+    }
+    public double averageLoss() {
+        return loss / samples;
+    }
+    public double accuracy() {
+        return (double) correct / samples;
+    }
+
+    // Copy of the confusion matrix, rows are the actual and columns the predicted classes
+    public int[][] confusionMatrix() {
+        int[][] copy = new int[numClasses][];
+        for (int i = 0; i < numClasses; i++) {
+            copy[i] = confusion[i].clone();
+        }
+        return copy;
+    }
+
+    // Fraction of the samples predicted as the class that belong to it, NaN if it was never predicted
+    public double precision(int c) {
+        int predicted = 0;
+        for (int i = 0; i < numClasses; i++) {
+            predicted += confusion[i][c];
+        }
+        return (predicted == 0) ? Double.NaN : (double) confusion[c][c] / predicted;
+    }
+    // Fraction of the samples of the class that were predicted as it, NaN if it does not occur
+    public double recall(int c) {
+        int actual = 0;
+        for (int j = 0; j < numClasses; j++) {
+            actual += confusion[c][j];
+        }
+        return (actual == 0) ? Double.NaN : (double) confusion[c][c] / actual;
+    }
+
+    // Wrong samples in dataset order, empty unless collection was requested (see Evaluator)
+    public List<Misclassified> misclassified() {
+        return Collections.unmodifiableList(misclassified);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("Samples: %d, Loss: %.8f, Accuracy: %.5f%n", samples, averageLoss(), accuracy()));
+        sb.append(String.format("%-6s %10s %10s%n", "Class", "Precision", "Recall"));
+        for (int c = 0; c < numClasses; c++) {
+            sb.append(String.format("%-6d %10.5f %10.5f%n", c, precision(c), recall(c)));
+        }
+        return sb.toString();
+    }
+}
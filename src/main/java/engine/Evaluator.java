@@ -0,0 +1,105 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import core.InferenceModel;
+
+/**
+ * Evaluates an inference snapshot on a labelled dataset in parallel.
+ *
+ * The dataset is cut into fixed chunks of CHUNK_SIZE samples that are evaluated on the pool, each
+ * into its own Evaluation, and merged in chunk order. The chunking does not depend on the number
+ * of threads, so the (floating point) loss sums are the same for every pool.
+ */
+public class Evaluator {
+    static final int CHUNK_SIZE = 256;
+
+    // Null evaluates on the calling thread
+    private final ForkJoinPool pool;
+
+    // Evaluates on the common ForkJoinPool
+    public Evaluator() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public Evaluator(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * @param model Snapshot to evaluate, shared by all workers (see InferenceModel).
+     * @param X Input features, one sample per row.
+     * @param y Class labels, 0 or 1 for a single output neuron.
+     */
+    public Evaluation evaluate(InferenceModel model, double[][] X, int[] y) {
+        return evaluate(model, X, y, false);
+    }
+
+    /**
+     * @param collectMisclassified Keep a record (with the output probabilities) of every wrong
+     *                             sample in Evaluation.misclassified(), e.g. for a final test run.
+     */
+    public Evaluation evaluate(InferenceModel model, double[][] X, int[] y, boolean collectMisclassified) {
+        if (X.length != y.length) {
+            throw new IllegalArgumentException("Number of samples and labels do not match.");
+        }
+        int numClasses = Math.max(2, model.numOutputs());
+        for (int label : y) {
+            if (label < 0 || label >= numClasses) {
+                throw new IllegalArgumentException("Label " + label + " is out of range for " + numClasses + " classes.");
+            }
+        }
+        int chunks = (X.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        Evaluation result = new Evaluation(numClasses, collectMisclassified);
+        if (pool == null || chunks <= 1) {
+            for (int c = 0; c < chunks; c++) {
+                result.merge(evaluateChunk(model, X, y, c * CHUNK_SIZE, Math.min(X.length, (c + 1) * CHUNK_SIZE), numClasses, collectMisclassified));
+            }
+            return result;
+        }
+        List<ForkJoinTask<Evaluation>> tasks = new ArrayList<>(chunks);
+        for (int c = 0; c < chunks; c++) {
+            int from = c * CHUNK_SIZE;
+            int to = Math.min(X.length, from + CHUNK_SIZE);
+            tasks.add(pool.submit(() -> evaluateChunk(model, X, y, from, to, numClasses, collectMisclassified)));
+        }
+        for (ForkJoinTask<Evaluation> task : tasks) {
+            result.merge(task.join());
+        }
+        return result;
+    }
+
+    private static Evaluation evaluateChunk(InferenceModel model, double[][] X, int[] y, int from, int to, int numClasses, boolean collectMisclassified) {
+        Evaluation partial = new Evaluation(numClasses, collectMisclassified);
+        int numOutputs = model.numOutputs();
+        double[] z = new double[numOutputs];
+        for (int i = from; i < to; i++) {
+            model.logits(X[i], z);
+            // Losses on the logits as in Value.binaryCrossEntropy and Value.crossEntropy, so they stay
+            // finite (and match the training loss) when a probability would round to 0 or 1
+            double loss;
+            int predicted;
+            if (numOutputs == 1) {
+                // Binary cross-entropy, thresholded at probability 0.5 (logit 0)
+                loss = Math.max(z[0], 0) - z[0] * y[i] + Math.log1p(Math.exp(-Math.abs(z[0])));
+                predicted = (z[0] >= 0) ? 1 : 0;
+            } else {
+                // Categorical cross-entropy, logsumexp shifted by the maximum logit
+                double max = Double.NEGATIVE_INFINITY;
+                for (int j = 0; j < numOutputs; j++) max = Math.max(max, z[j]);
+                double sum = 0.0;
+                for (int j = 0; j < numOutputs; j++) sum += Math.exp(z[j] - max);
+                loss = max + Math.log(sum) - z[y[i]];
+                predicted = InferenceModel.argmax(z, numOutputs);
+            }
+            if (predicted != y[i] && collectMisclassified) {
+                InferenceModel.probabilities(z, numOutputs);
+            }
+            partial.add(i, predicted, y[i], loss, z, numOutputs);
+        }
+        return partial;
+    }
+}
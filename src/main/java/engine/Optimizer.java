@@ -0,0 +1,33 @@
+package engine;
+
+import core.Value;
+
+/**
+ * Update rule applied to the parameters after every backward pass.
+ *
+ * Implementations keep their state (velocities, moment estimates) in flat double arrays whose
+ * index i belongs to params[i], so they must always be stepped with the same parameter array,
+ * e.g. MLP.parameterView(). An update is a single pass over the parameters without allocating.
+ */
+public interface Optimizer {
+    // Updates every params[i].data in place from params[i].grad
+    void step(Value[] params);
+
+    double getLearningRate();
+    void setLearningRate(double learningRate);
+    // Coefficient of the weight decay the update applies itself, 0 if none
+    double getWeightDecay();
+
+    // Drops the accumulated state, so the next step starts as on fresh parameters
+    void reset();
+
+    // Copy of the accumulated state as flat arrays (none before the first step), e.g. for checkpoints
+    double[][] getState();
+    /**
+     * Restores a state returned by getState() of an optimizer of the same type, the next step
+     * continues as if it had been taken by that optimizer.
+     *
+     * @throws IllegalArgumentException If the state does not belong to this type of optimizer.
+     */
+    void setState(double[][] state);
+}
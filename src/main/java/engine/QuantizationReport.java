@@ -0,0 +1,43 @@
+package engine;
+
+import core.InferenceModel;
+
+/**
+ * Accuracy and size of a quantized snapshot next to the float64 model it was built from, evaluated
+ * on the same labelled data (normally the test set), for gating a rollout of the quantized model.
+ */
+public class QuantizationReport {
+    public final Evaluation reference;
+    public final Evaluation quantized;
+    public final long referenceBytes;
+    public final long quantizedBytes;
+
+    QuantizationReport(Evaluation reference, Evaluation quantized, long referenceBytes, long quantizedBytes) {
+        this.reference = reference;
+        this.quantized = quantized;
+        this.referenceBytes = referenceBytes;
+        this.quantizedBytes = quantizedBytes;
+    }
+
+    // Evaluates both snapshots on X, y with the given evaluator
+    public static QuantizationReport compare(Evaluator evaluator, InferenceModel reference, InferenceModel quantized, double[][] X, int[] y) {
+        return new QuantizationReport(evaluator.evaluate(reference, X, y), evaluator.evaluate(quantized, X, y),
+                reference.parameterBytes(), quantized.parameterBytes());
+    }
+
+    // Quantized minus reference accuracy, negative when quantization loses accuracy
+    public double accuracyDelta() {
+        return quantized.accuracy() - reference.accuracy();
+    }
+
+    // True if the quantized accuracy is at most maxDrop below the reference accuracy
+    public boolean withinTolerance(double maxDrop) {
+        return accuracyDelta() >= -maxDrop;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Quantization: float64 accuracy %.5f, int8 accuracy %.5f, delta %+.5f, parameters %d -> %d bytes (%.1fx smaller)",
+                reference.accuracy(), quantized.accuracy(), accuracyDelta(), referenceBytes, quantizedBytes, (double) referenceBytes / quantizedBytes);
+    }
+}
@@ -0,0 +1,84 @@
+package engine;
+
+import core.Value;
+
+/**
+ * RMSProp: the step of every parameter is divided by a running root mean square of its gradients.
+ */
+public class RMSProp implements Optimizer {
+    private double learningRate;
+    private final double rho;
+    private final double epsilon;
+    private final double weightDecay;
+    private double[] meanSquare;
+
+    public RMSProp(double learningRate) {
+        this(learningRate, 0.9, 1e-8, 0.0);
+    }
+
+    /**
+     * @param rho Decay rate of the running mean of squared gradients.
+     * @param weightDecay Coefficient of the weight decay term added to every gradient.
+     */
+    public RMSProp(double learningRate, double rho, double epsilon, double weightDecay) {
+        if (learningRate <= 0) {
+            throw new IllegalArgumentException("Learning rate must be positive.");
+        }
+        if (rho < 0 || rho >= 1) {
+            throw new IllegalArgumentException("Rho must be in [0, 1).");
+        }
+        if (epsilon <= 0) {
+            throw new IllegalArgumentException("Epsilon must be positive.");
+        }
+        if (weightDecay < 0) {
+            throw new IllegalArgumentException("Weight decay must not be negative.");
+        }
+        this.learningRate = learningRate;
+        this.rho = rho;
+        this.epsilon = epsilon;
+        this.weightDecay = weightDecay;
+    }
+
+    @Override
+    public void step(Value[] params) {
+        if (meanSquare == null || meanSquare.length != params.length) {
+            meanSquare = new double[params.length];
+        }
+        for (int i = 0; i < params.length; i++) {
+            Value p = params[i];
+            double g = p.grad + weightDecay * p.data;
+            meanSquare[i] = rho * meanSquare[i] + (1 - rho) * g * g;
+            p.data -= learningRate * g / (Math.sqrt(meanSquare[i]) + epsilon);
+        }
+    }
+
+    @Override
+    public double getLearningRate() {
+        return learningRate;
+    }
+    @Override
+    public double getWeightDecay() {
+        return weightDecay;
+    }
+    @Override
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    @Override
+    public void reset() {
+        meanSquare = null;
+    }
+
+    @Override
+    public double[][] getState() {
+        return (meanSquare == null) ? new double[0][] : new double[][]{meanSquare.clone()};
+    }
+    @Override
+    public void setState(double[][] state) {
+        if (state.length > 1) {
+            throw new IllegalArgumentException("Expected at most 1 state array for RMSProp, got " + state.length);
+        }
+        meanSquare = (state.length == 0) ? null : state[0].clone();
+    }
+}
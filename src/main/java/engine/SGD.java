@@ -0,0 +1,94 @@
+package engine;
+
+import core.Value;
+
+/**
+ * Stochastic Gradient Descent with optional (Nesterov) momentum and L2 weight decay.
+ *
+ * Without momentum this is the plain update w -= lr * (grad + weightDecay * w).
+ */
+public class SGD implements Optimizer {
+    private double learningRate;
+    private final double momentum;
+    private final boolean nesterov;
+    private final double weightDecay;
+    private double[] velocity;
+
+    public SGD(double learningRate) {
+        this(learningRate, 0.0, false, 0.0);
+    }
+
+    /**
+     * @param momentum Fraction of the previous velocity kept at each step (0 disables momentum).
+     * @param nesterov Evaluate the momentum step at the look-ahead point.
+     * @param weightDecay Coefficient of the weight decay term added to every gradient.
+     */
+    public SGD(double learningRate, double momentum, boolean nesterov, double weightDecay) {
+        if (learningRate <= 0) {
+            throw new IllegalArgumentException("Learning rate must be positive.");
+        }
+        if (momentum < 0 || momentum >= 1) {
+            throw new IllegalArgumentException("Momentum must be in [0, 1).");
+        }
+        if (nesterov && momentum == 0) {
+            throw new IllegalArgumentException("Nesterov momentum requires a momentum above 0.");
+        }
+        if (weightDecay < 0) {
+            throw new IllegalArgumentException("Weight decay must not be negative.");
+        }
+        this.learningRate = learningRate;
+        this.momentum = momentum;
+        this.nesterov = nesterov;
+        this.weightDecay = weightDecay;
+    }
+
+    @Override
+    public void step(Value[] params) {
+        if (momentum == 0) {
+            for (Value p : params) {
+                p.data -= learningRate * (p.grad + weightDecay * p.data);
+            }
+            return;
+        }
+        if (velocity == null || velocity.length != params.length) {
+            velocity = new double[params.length];
+        }
+        for (int i = 0; i < params.length; i++) {
+            Value p = params[i];
+            double g = p.grad + weightDecay * p.data;
+            double v = momentum * velocity[i] + g;
+            velocity[i] = v;
+            p.data -= learningRate * (nesterov ? g + momentum * v : v);
+        }
+    }
+
+    @Override
+    public double getLearningRate() {
+        return learningRate;
+    }
+    @Override
+    public double getWeightDecay() {
+        return weightDecay;
+    }
+    @Override
+    public void setLearningRate(double learningRate) {
+        this.learningRate = learningRate;
+    }
+
+    @Override
+    public void reset() {
+        velocity = null;
+    }
+
+    @Override
+    public double[][] getState() {
+        return (velocity == null) ? new double[0][] : new double[][]{velocity.clone()};
+    }
+    @Override
+    public void setState(double[][] state) {
+        if (state.length > 1) {
+            throw new IllegalArgumentException("Expected at most 1 state array for SGD, got " + state.length);
+        }
+        velocity = (state.length == 0) ? null : state[0].clone();
+    }
+}
@@ -1,29 +1,257 @@
 package engine;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Path;
 import java.util.ArrayList;
-// import java.util.Arrays;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
+import core.CompiledGraph;
 import core.MLP;
+import core.MemoryPlan;
+import core.ModelFile;
+import core.PlannedExecutor;
+import core.Tensor;
 import core.Value;
+import data.DataPipeline;
+import data.DataPipeline.Batch;
+import data.DigitDataLoader.DataSet;
+import metrics.ConsoleMetrics;
+import metrics.MetricsListener;
+import metrics.TrainingMetrics;
 
-public class Trainer {
+public class Trainer implements AutoCloseable {
     private final MLP model;
+    // Run forward/backward on the Tensor path (one node per layer) instead of per-scalar Values
+    private boolean useTensors = false;
+    // Samples per forward/backward pass and parameter update, values above 1 imply the Tensor path
+    private int batchSize = 1;
+    // Run the scalar path on static plans traced from the Value graph (see CompiledGraph)
+    private boolean compiled = false;
+    // Batched path on PlannedExecutors keeping every n-th layer's activations, 0 uses the Tensor graph
+    private int activationCheckpointEvery = 0;
+    private final List<PlannedExecutor> executors = new ArrayList<>();
+    // Worker pool for data-parallel training, null when running on the calling thread only
+    private ForkJoinPool pool = null;
+    private int threads = 1;
+    // Validation and test runs, on the common pool unless set otherwise
+    private Evaluator evaluator = new Evaluator();
+    // Update rule, plain SGD when none is set
+    private Optimizer optimizer = null;
+    // Coefficient of the L2 penalty lambda * sum(w^2) over the weights (biases excluded), unused
+    // when the optimizer has its own weight decay
+    private double l2Lambda = 1e-4;
+    // Metrics sinks, the console summary by default
+    private final List<MetricsListener> listeners = new ArrayList<>(List.of(new ConsoleMetrics()));
+    // Emit an event (with gradient norm and allocation) after every optimizer step
+    private boolean stepMetrics = false;
+    private long lastAllocated;
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    // Periodic and best-model checkpoints, none when null
+    private Checkpointer checkpointer = null;
+    // Stop after this many epochs without a better validation loss, 0 disables
+    private int patience = 0;
+    // Stop when 'Q' is typed on System.in, checked after every epoch
+    private boolean stopOnKeypress = true;
+    // State restored by resume(), applied when the next train() call starts
+    private Checkpoint resumeFrom = null;
     
     public Trainer(MLP model) {
         this.model = model;
     }
 
+    public void setUseTensors(boolean useTensors) {
+        this.useTensors = useTensors;
+    }
+
+    /**
+     * Trace the per-sample Value graph (forward pass plus loss) once into a static plan and execute
+     * it over primitive arrays instead of replaying the Value nodes. Only affects the scalar path.
+     */
+    public void setCompiled(boolean compiled) {
+        this.compiled = compiled;
+    }
+
+    /**
+     * Run the batched (Tensor) path on memory-planned executors instead of the Tensor graph:
+     * activation buffers are reused once their lifetime ends, and only the inputs of every n-th
+     * layer are kept for backward, the others are recomputed (see MemoryPlan). 1 keeps all
+     * activations, 0 switches back to the Tensor graph. Use memoryPlan() to size a configuration.
+     * Unrelated to the model checkpoints written by setCheckpointer().
+     */
+    public void setActivationCheckpointEvery(int every) {
+        if (every < 0) {
+            throw new IllegalArgumentException("Activation checkpoint interval must not be negative.");
+        }
+        this.activationCheckpointEvery = every;
+        synchronized (executors) {
+            executors.clear();
+        }
+    }
+
+    // Memory plan of one worker for the given batch size with the current settings
+    public MemoryPlan memoryPlan(int batchSize) {
+        int rows = (batchSize + threads - 1) / threads;
+        return new MemoryPlan(model.layerSizes(), rows, Math.max(1, activationCheckpointEvery));
+    }
+
+    /**
+     * Set the mini-batch size. Each batch is forwarded as one [batchSize, numInputs] matrix,
+     * its losses are averaged and the graph is built and traversed once per batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Set the number of worker threads for data-parallel training. Each mini-batch is split into
+     * one chunk per thread, every worker accumulates gradients into its own parameter copies,
+     * and the chunks are reduced in a fixed order before a single update, so results are
+     * deterministic for a given number of threads. They match a single-threaded run only within
+     * rounding, as the chunk sums are added in a different order. Values above 1 imply the Tensor
+     * path; use a batch size of at least a few samples per thread. The previous worker pool is
+     * shut down, close() shuts down the last one.
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1.");
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+        this.threads = threads;
+        this.pool = (threads > 1) ? new ForkJoinPool(threads) : null;
+        // Executors are per chunk and sized for the old chunk rows
+        synchronized (executors) {
+            executors.clear();
+        }
+    }
+
+    /**
+     * Set the update rule (e.g. SGD with momentum, Adam). Its learning rate is replaced by the
+     * one passed to train(), its state is kept across train() calls until reset() is called.
+     * An optimizer with a non-zero weight decay replaces the Trainer's L2 regularization.
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    /**
+     * Set the L2 regularization coefficient (0 disables it). The penalty is not part of the
+     * autograd graph: its gradient 2 * lambda * w is added to the weight gradients right
+     * before every optimizer step. Only one regularizer is applied: if the optimizer has a
+     * non-zero weight decay (e.g. AdamW), that decay wins and this coefficient is ignored.
+     */
+    public void setL2Regularization(double lambda) {
+        if (lambda < 0) {
+            throw new IllegalArgumentException("L2 regularization coefficient must not be negative.");
+        }
+        this.l2Lambda = lambda;
+    }
+
+    // Current value of the L2 penalty, only computed when asked for (e.g. for logging)
+    public double getL2Penalty() {
+        double lambda = l2Lambda();
+        if (lambda == 0) return 0.0;
+        double sum = 0.0;
+        for (Value w : model.weightView()) {
+            sum += w.data * w.data;
+        }
+        return lambda * sum;
+    }
+    // L2 coefficient actually applied, 0 when the optimizer decays the weights itself
+    private double l2Lambda() {
+        return (optimizer != null && optimizer.getWeightDecay() > 0) ? 0.0 : l2Lambda;
+    }
+
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    // Stop training when the validation loss has not improved for the given number of epochs
+    public void setEarlyStopping(int patience) {
+        if (patience < 0) {
+            throw new IllegalArgumentException("Patience must not be negative.");
+        }
+        this.patience = patience;
+    }
+
+    /**
+     * Stop training when 'Q' is typed on System.in, checked after every epoch (on by default).
+     * Turn it off when stdin is not a console, e.g. for concurrent or test runs.
+     */
+    public void setStopOnKeypress(boolean stopOnKeypress) {
+        this.stopOnKeypress = stopOnKeypress;
+    }
+
+    /**
+     * Restore the parameters from a checkpoint and continue the run with the next train() call:
+     * it starts at the epoch after the checkpoint, with the saved learning rate, optimizer state,
+     * best validation loss and (for a shuffled pipeline) shuffle seed. The epochs argument of
+     * train() stays the total number of epochs of the run.
+     *
+     * @return The checkpoint, e.g. to check its epoch.
+     */
+    public Checkpoint resume(Path path) throws IOException {
+        Checkpoint checkpoint = Checkpoint.read(path);
+        if (!Arrays.equals(checkpoint.layerSizes, model.layerSizes())) {
+            throw new IOException("Checkpoint layer sizes " + Arrays.toString(checkpoint.layerSizes) + " do not match " + Arrays.toString(model.layerSizes()));
+        }
+        resume(checkpoint);
+        return checkpoint;
+    }
+    // Same as resume(Path) for a checkpoint held in memory, e.g. to continue a run for more epochs
+    public void resume(Checkpoint checkpoint) {
+        if (!Arrays.equals(checkpoint.layerSizes, model.layerSizes())) {
+            throw new IllegalArgumentException("Checkpoint layer sizes " + Arrays.toString(checkpoint.layerSizes) + " do not match " + Arrays.toString(model.layerSizes()));
+        }
+        model.setParameterData(checkpoint.parameters);
+        resumeFrom = checkpoint;
+    }
+
+    public void setEvaluator(Evaluator evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    public void addListener(MetricsListener listener) {
+        listeners.add(listener);
+    }
+    public void removeListener(MetricsListener listener) {
+        listeners.remove(listener);
+    }
+    // Removes all sinks, including the default console output
+    public void clearListeners() {
+        listeners.clear();
+    }
+
+    /**
+     * Emit a metrics event after every optimizer step instead of only per epoch. Step events add
+     * a pass over the gradients (for their norm) and an allocation counter read to every step.
+     */
+    public void setStepMetrics(boolean stepMetrics) {
+        this.stepMetrics = stepMetrics;
+    }
+
     public int getModelParametersCount() {
-        return model.parameters().size();
+        return model.parameterView().length;
     }
     
     /**
-     * Train the binary classifier using Stochastic Gradient Descent.
+     * Train the model with the configured optimizer, Stochastic Gradient Descent by default
+     * (mini-batch when a batch size is set).
      * 
      * @param X Input features, a 2D array where each row is a sample.
      * @param y Labels, a 1D array where each element corresponds to the label of the sample in X.
-     * @param learningRate Learning rate for the optimizer.
+     * @param learningRate Initial learning rate for the optimizer.
      * @param epochs Number of training epochs.
      * @param X_val Validation input features (optional, can be null)
      * @param y_val Validation labels (optional, can be null)
@@ -41,123 +269,433 @@ public class Trainer {
         if (y.length == 0) {
             throw new IllegalArgumentException("Output array must not be empty.");
         }        
-        for (int epoch = 0; epoch < epochs; epoch++) {
-            double totalLoss = 0.0;
-            double totalValLoss = 0.0;
+        DataPipeline pipeline = new DataPipeline(new DataSet(X, y));
+        pipeline.setBatchSize(batchSize);
+        train(pipeline, learningRate, epochs, X_val, y_val, learningRateDecay, decayStartEpoch, decayEvery);
+    }
+
+    /**
+     * Train the model on batches from a data pipeline, which handles shuffling, augmentation and
+     * streaming, and prepares the next batches on a background thread while the current one trains.
+     * The batch size of the pipeline is used instead of setBatchSize().
+     *
+     * @param data Training data, iterated once per epoch.
+     * @see #train(double[][], int[], double, int, double[][], int[], boolean, int, int)
+     */
+    public void train(DataPipeline data, double learningRate, int epochs, double[][] X_val, int[] y_val, boolean learningRateDecay, int decayStartEpoch, int decayEvery) {
+        boolean tensorPath = useTensors || data.batchSize() > 1 || threads > 1;
+        if (optimizer == null) {
+            optimizer = new SGD(learningRate);
+        }
+        optimizer.setLearningRate(learningRate);
+        int firstEpoch = 0;
+        double bestValidationLoss = Double.POSITIVE_INFINITY;
+        if (resumeFrom != null) {
+            if (!resumeFrom.optimizer.equals(optimizer.getClass().getName())) {
+                throw new IllegalStateException("Checkpoint holds the state of " + resumeFrom.optimizer + ", not of " + optimizer.getClass().getName());
+            }
+            optimizer.setState(resumeFrom.optimizerState);
+            optimizer.setLearningRate(resumeFrom.learningRate);
+            if (data.isShuffled()) {
+                data.setShuffle(resumeFrom.seed);
+            }
+            firstEpoch = resumeFrom.epoch;
+            if (!Double.isNaN(resumeFrom.bestValidationLoss)) {
+                bestValidationLoss = resumeFrom.bestValidationLoss;
+            }
+            resumeFrom = null;
+        }
+        int epochsWithoutImprovement = 0;
+        Value[] params = model.parameterView();
+        // The scalar graph only depends on the label, so one graph per label is built and replayed
+        Map<Integer, ScalarGraph> scalarGraphs = new HashMap<>();
+        Map<Integer, CompiledGraph> compiledGraphs = new HashMap<>();
+        // Logits of the current sample on the scalar path, for the training accuracy
+        int[] layerSizes = model.layerSizes();
+        double[] sampleLogits = new double[layerSizes[layerSizes.length - 1]];
+        for (int epoch = firstEpoch; epoch < epochs; epoch++) {
+            TrainingMetrics epochMetrics = new TrainingMetrics(TrainingMetrics.Kind.EPOCH, epoch);
+            long epochStart = System.nanoTime();
+            long allocatedStart = allocatedBytes();
+            lastAllocated = allocatedStart;
             // Learning rate decay 
             if (learningRateDecay && epoch > decayStartEpoch && epoch % decayEvery == 0) {
-                learningRate *= 0.9; 
+                optimizer.setLearningRate(optimizer.getLearningRate() * 0.9);
             }
-            for (int i = 0; i < X.length; i++) {
-                // Wrap inputs in Value objects
-                List<Value> inputs = new ArrayList<>();
-                for (double d : X[i]) {
-                    inputs.add(new Value(d));
-                }
+            try (DataPipeline.Epoch batches = data.epoch(epoch)) {
+                while (batches.hasNext()) {
+                    Batch batch = batches.next();
+                    if (tensorPath) {
+                        TrainingMetrics step = new TrainingMetrics(TrainingMetrics.Kind.STEP, epoch);
+                        tensorStep(batch, step);
+                        finishStep(step, epochMetrics);
+                        continue;
+                    }
+                    int numInputs = batch.numFeatures;
+                    for (int i = 0; i < batch.rows(); i++) {
+                        TrainingMetrics step = new TrainingMetrics(TrainingMetrics.Kind.STEP, epoch);
+                        long start, forwardEnd;
+                        if (compiled) {
+                            // Executing the static plan for this label over its primitive slots
+                            CompiledGraph plan = compiledGraphs.computeIfAbsent(batch.labels[i], label -> model.compile(logits -> loss(logits, label)));
+                            start = System.nanoTime();
+                            step.loss = plan.forward(batch.features, i * numInputs);
+                            forwardEnd = System.nanoTime();
+                            for (int j = 0; j < sampleLogits.length; j++) {
+                                sampleLogits[j] = plan.rootOperand(j);
+                            }
+                            step.correct = (predicted(sampleLogits, 0, sampleLogits.length) == batch.labels[i]) ? 1 : 0;
 
-                // Forward pass
-                List<Value> outs = model.forward(inputs);
-                
-                Value loss;
-                // If binary classification, calculate binary cross-entropy loss
-                // Assuming outs is a single output neuron with sigmoid activation
-                if (outs.size() == 1) {
-                    Value prediction = outs.get(0);
-                    Value groundTruth = new Value(y[i]);
-                    loss = binaryCE(groundTruth, prediction);
-                    totalLoss += loss.data;
-                // Else multi-class classification, calculate categorical cross-entropy loss
-                // Assuming outs is softmaxed already and contains probabilities for each class
-                } else {
-                    // Takes the prediction for the class number corresponding to y[i] (the ground truth label)
-                    Value prediction = outs.get(y[i]);
-                    loss = prediction.log().mul(new Value(-1.0));
-                    totalLoss += loss.data;
-                }
-                
-                loss = l2Regularization(loss);
-                
-                // Backward pass
-                model.zeroGrad();
-                loss.backward();
-
-                // Update parameters with Stochastic Gradient Descent
-                for (Value param : model.parameters()) {
-                    param.data -= learningRate * param.grad;
+                            // Backward pass
+                            model.zeroGrad();
+                            plan.backward();
+                            step.graphNodes = plan.size();
+                        } else {
+                            // Replaying the cached graph for this label with the new inputs
+                            ScalarGraph graph = scalarGraphs.computeIfAbsent(batch.labels[i], label -> scalarGraph(numInputs, label));
+                            for (int j = 0; j < numInputs; j++) {
+                                graph.inputs.get(j).data = batch.features[i * numInputs + j];
+                            }
+                            Value.Tape tape = graph.loss.tape();
+                            start = System.nanoTime();
+                            tape.forward();
+                            forwardEnd = System.nanoTime();
+                            for (int j = 0; j < sampleLogits.length; j++) {
+                                sampleLogits[j] = graph.logits.get(j).data;
+                            }
+                            step.correct = (predicted(sampleLogits, 0, sampleLogits.length) == batch.labels[i]) ? 1 : 0;
+
+                            // Backward pass
+                            model.zeroGrad();
+                            tape.backward();
+                            step.loss = graph.loss.data;
+                            step.graphNodes = tape.size();
+                        }
+                        long backwardEnd = System.nanoTime();
+
+                        // Update parameters
+                        applyL2Gradient();
+                        optimizer.step(params);
+
+                        step.samples = 1;
+                        step.forwardNanos = forwardEnd - start;
+                        step.backwardNanos = backwardEnd - forwardEnd;
+                        step.updateNanos = System.nanoTime() - backwardEnd;
+                        finishStep(step, epochMetrics);
+                    }
                 }
             }
+            model.parametersChanged();
+            epochMetrics.samplesPerSecond = epochMetrics.samples / ((System.nanoTime() - epochStart) / 1e9);
+            if (allocatedStart >= 0) {
+                epochMetrics.allocatedBytes = allocatedBytes() - allocatedStart;
+            }
+            epochMetrics.gradientNorm = gradientNorm();
+            epochMetrics.learningRate = optimizer.getLearningRate();
+            if (l2Lambda() > 0) {
+                epochMetrics.l2Penalty = getL2Penalty();
+            }
             // If validation dataset provided
             if (X_val != null) {
-                // Calculate validation loss
-                for (int i = 0; i < X_val.length; i++) {
-                    Value valLoss;
-                    List<Value> valInputs = new ArrayList<>();
-                    for (double d : X_val[i]) {
-                        valInputs.add(new Value(d));
-                    }
+                // Calculate validation loss on the graph-free inference path
+                validate(X_val, y_val, epochMetrics);
+            }
+            boolean improved = X_val != null && epochMetrics.validationLoss < bestValidationLoss;
+            if (improved) {
+                bestValidationLoss = epochMetrics.validationLoss;
+                epochsWithoutImprovement = 0;
+            } else if (X_val != null) {
+                epochsWithoutImprovement++;
+            }
+            if (patience > 0 && epochsWithoutImprovement >= patience) {
+                epochMetrics.earlyStop = TrainingMetrics.EarlyStop.PATIENCE;
+            } else if (stopOnKeypress && quitPressed()) {
+                // Early stopping: check if 'Q' is pressed
+                epochMetrics.earlyStop = TrainingMetrics.EarlyStop.USER;
+            }
+            // Listeners see the epoch before the stop, so they can report it
+            for (MetricsListener listener : listeners) {
+                listener.onEpoch(epochMetrics);
+            }
 
-                    List<Value> valOuts = model.forward(valInputs);
-
-                    if (valOuts.size() == 1) {
-                        // Binary classification loss
-                        Value valPrediction = valOuts.get(0);
-                        Value groundTruth = new Value(y_val[i]);
-                        valLoss = binaryCE(groundTruth, valPrediction);
-                    } else {
-                        // Multi-class loss
-                        Value valPrediction = valOuts.get(y_val[i]);
-                        valLoss = valPrediction.log().mul(new Value(-1.0));
-                    }
-                    totalValLoss += valLoss.data;
+            boolean stop = epochMetrics.earlyStop != null;
+            if (checkpointer != null) {
+                boolean latest = stop || (epoch + 1) % checkpointer.every() == 0 || epoch == epochs - 1;
+                boolean best = improved && checkpointer.keepBest();
+                if (latest || best) {
+                    // The writer gets copies, so training continues while they are written
+                    Checkpoint checkpoint = new Checkpoint(epoch + 1, data.seed(), optimizer.getLearningRate(), epochMetrics.validationLoss,
+                            (X_val != null) ? bestValidationLoss : Double.NaN, model.layerSizes(), model.parameterData(),
+                            optimizer.getClass().getName(), optimizer.getState());
+                    checkpointer.save(checkpoint, latest, best);
                 }
             }
+            if (stop) {
+                break;
+            }
+        }
+        if (checkpointer != null) {
+            checkpointer.flush();
+        }
+    }
+    private static boolean quitPressed() {
+        try {
+            if (System.in.available() > 0) {
+                int ch = System.in.read();
+                return ch == 'Q' || ch == 'q';
+            }
+        } catch (Exception e) {
+            // Ignore input errors
+        }
+        return false;
+    }
+    // Scalar Value graph of the loss for one sample with the given label, inputs are placeholders
+    private ScalarGraph scalarGraph(int numInputs, int label) {
+        // Wrap inputs in Value objects
+        List<Value> inputs = new ArrayList<>();
+        for (int j = 0; j < numInputs; j++) {
+            inputs.add(new Value(0.0));
+        }
 
-            if (epoch % 1 == 0 || epoch == epochs - 1) {
-                System.out.println("-------------------");
-                System.out.println("Epoch " + epoch + ":");
-                System.out.printf("Training loss: %.8f%n", totalLoss);
-                double avgTrainLoss = totalLoss / X.length;
-                System.out.printf("avgTrainLoss: %.8f%n", avgTrainLoss);
-                
-                if (X_val != null) {
-                    System.out.printf("Validation Loss: %.8f%n", totalValLoss);
-                    double avgValLoss = totalValLoss / X_val.length;
-                    System.out.printf("avgValLoss: %.8f%n", avgValLoss);
-                }
+        // Forward pass up to the raw output logits, the loss applies the output activation itself
+        List<Value> logits = model.logits(inputs);
+        return new ScalarGraph(inputs, logits, loss(logits, label));
+    }
+    private static Value loss(List<Value> logits, int label) {
+        // If binary classification, sigmoid + binary cross-entropy fused into one node
+        if (logits.size() == 1) {
+            return Value.binaryCrossEntropy(logits.get(0), label);
+        // Else multi-class classification, softmax + categorical cross-entropy fused into one node
+        } else {
+            return Value.crossEntropy(logits, label);
+        }
+    }
+    private static class ScalarGraph {
+        final List<Value> inputs;
+        final List<Value> logits;
+        final Value loss;
+
+        ScalarGraph(List<Value> inputs, List<Value> logits, Value loss) {
+            this.inputs = inputs;
+            this.logits = logits;
+            this.loss = loss;
+        }
+    }
+    // Class predicted from the n logits at offset: argmax, or logit >= 0 for a single (sigmoid) output
+    private static int predicted(double[] logits, int offset, int n) {
+        if (n == 1) {
+            return (logits[offset] >= 0) ? 1 : 0;
+        }
+        int best = 0;
+        for (int j = 1; j < n; j++) {
+            if (logits[offset + j] > logits[offset + best]) best = j;
+        }
+        return best;
+    }
+    // Adds a finished step to the epoch totals and, when enabled, completes and emits its event
+    private void finishStep(TrainingMetrics step, TrainingMetrics epoch) {
+        step.step = epoch.step++;
+        epoch.samples += step.samples;
+        epoch.loss += step.loss;
+        if (step.correct >= 0) {
+            epoch.correct = Math.max(epoch.correct, 0) + step.correct;
+        }
+        epoch.forwardNanos += step.forwardNanos;
+        epoch.backwardNanos += step.backwardNanos;
+        epoch.updateNanos += step.updateNanos;
+        epoch.graphNodes = step.graphNodes;
+        if (!stepMetrics) return;
 
+        step.gradientNorm = gradientNorm();
+        step.learningRate = optimizer.getLearningRate();
+        long allocated = allocatedBytes();
+        if (allocated >= 0) {
+            step.allocatedBytes = allocated - lastAllocated;
+            lastAllocated = allocated;
+        }
+        for (MetricsListener listener : listeners) {
+            listener.onStep(step);
+        }
+    }
+    // L2 norm of the current parameter gradients
+    private double gradientNorm() {
+        double sum = 0.0;
+        for (Value p : model.parameterView()) {
+            sum += p.grad * p.grad;
+        }
+        return Math.sqrt(sum);
+    }
+    // Bytes allocated so far by the calling thread, -1 if not supported by the JVM
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
             }
-            // Early stopping: check if 'Q' is pressed
-            try {
-                if (System.in.available() > 0) {
-                    int ch = System.in.read();
-                    if (ch == 'Q' || ch == 'q') {
-                        System.out.println("Early stopping triggered by user.");
-                        break;
-                    }
-                }
-            } catch (Exception e) {
-                // Ignore input errors
+        }
+        return -1;
+    }
+    // Gradient of the L2 penalty, added analytically instead of through the graph
+    private void applyL2Gradient() {
+        double lambda = l2Lambda();
+        if (lambda == 0) return;
+        for (Value w : model.weightView()) {
+            w.grad += 2 * lambda * w.data;
+        }
+    }
+
+    // One optimizer step over the batch on the Tensor path, recording its loss and timings into step
+    private void tensorStep(Batch batch, TrainingMetrics step) {
+        List<Tensor> params = (activationCheckpointEvery > 0) ? null : model.parameterTensors();
+        int rows = batch.rows();
+        int chunks = Math.min(threads, rows);
+
+        List<ChunkResult> results = new ArrayList<>(chunks);
+        if (chunks == 1) {
+            results.add(chunkStep(batch, 0, rows, params, 0));
+        } else {
+            List<ForkJoinTask<ChunkResult>> tasks = new ArrayList<>(chunks);
+            for (int c = 0; c < chunks; c++) {
+                int chunkFrom = (int) ((long) rows * c / chunks);
+                int chunkTo = (int) ((long) rows * (c + 1) / chunks);
+                int chunk = c;
+                tasks.add(pool.submit(() -> chunkStep(batch, chunkFrom, chunkTo, params, chunk)));
+            }
+            for (ForkJoinTask<ChunkResult> task : tasks) {
+                results.add(task.join());
+            }
+        }
+
+        // Deterministic reduction: chunk gradients are summed in chunk order
+        long start = System.nanoTime();
+        model.zeroGrad();
+        for (ChunkResult result : results) {
+            if (result.executor != null) {
+                result.executor.accumulateGrad();
+            } else {
+                model.accumulateGrad(result.params);
+            }
+            step.loss += result.dataLoss;
+            step.correct = Math.max(step.correct, 0) + result.correct;
+            step.forwardNanos += result.forwardNanos;
+            step.backwardNanos += result.backwardNanos;
+        }
+
+        applyL2Gradient();
+        optimizer.step(model.parameterView());
+        step.updateNanos = System.nanoTime() - start;
+        step.samples = rows;
+        step.graphNodes = results.get(0).graphNodes;
+    }
+    /**
+     * Forward and backward pass over rows [from..to) of the batch on detached copies of the
+     * parameters. Chunk losses are scaled so that they sum to the batch mean.
+     */
+    private ChunkResult chunkStep(Batch batch, int from, int to, List<Tensor> params, int chunk) {
+        if (activationCheckpointEvery > 0) {
+            return plannedChunkStep(batch, from, to, executor(chunk, batch.rows()));
+        }
+        List<Tensor> local = new ArrayList<>(params.size());
+        for (Tensor p : params) {
+            local.add(p.detach());
+        }
+        long start = System.nanoTime();
+        Tensor logits = model.logits(inputs(batch, from, to), local);
+        Tensor loss = loss(logits, Arrays.copyOfRange(batch.labels, from, to));
+        double dataLoss = loss.item() * (to - from);
+        loss = loss.mul((double) (to - from) / batch.rows());
+        long forwardEnd = System.nanoTime();
+        loss.backward();
+        long backwardEnd = System.nanoTime();
+        int cols = logits.cols();
+        int correct = 0;
+        for (int r = 0; r < to - from; r++) {
+            if (predicted(logits.data, r * cols, cols) == batch.labels[from + r]) correct++;
+        }
+        ChunkResult result = new ChunkResult(dataLoss, local, forwardEnd - start, backwardEnd - forwardEnd, loss.graphSize());
+        result.correct = correct;
+        return result;
+    }
+    // Same step on the memory-planned executor, which times forward and backward as one pass
+    private ChunkResult plannedChunkStep(Batch batch, int from, int to, PlannedExecutor executor) {
+        long start = System.nanoTime();
+        int cols = batch.numFeatures;
+        double[] input = (from == 0 && to == batch.rows()) ? batch.features : Arrays.copyOfRange(batch.features, from * cols, to * cols);
+        double dataLoss = executor.run(input, Arrays.copyOfRange(batch.labels, from, to), to - from, 1.0 / batch.rows());
+        ChunkResult result = new ChunkResult(dataLoss, null, System.nanoTime() - start, 0, -1);
+        result.executor = executor;
+        result.correct = executor.correct();
+        return result;
+    }
+    // Executor of a chunk, one per chunk index. Smaller (e.g. last partial) batches reuse it; it is
+    // rebuilt only when a batch outgrows its plan, so the cache never exceeds the number of threads
+    private PlannedExecutor executor(int chunk, int batchRows) {
+        synchronized (executors) {
+            while (executors.size() <= chunk) {
+                executors.add(null);
             }
+            PlannedExecutor executor = executors.get(chunk);
+            int rows = (batchRows + threads - 1) / threads;
+            if (executor == null || executor.plan().batchSize < rows) {
+                executor = new PlannedExecutor(model, new MemoryPlan(model.layerSizes(), rows, activationCheckpointEvery));
+                executors.set(chunk, executor);
+            }
+            return executor;
+        }
+    }
+    private static class ChunkResult {
+        final double dataLoss;
+        final List<Tensor> params;
+        final long forwardNanos;
+        final long backwardNanos;
+        final int graphNodes;
+        // Set on the memory-planned path, which keeps the gradients in the executor instead of params
+        PlannedExecutor executor = null;
+        // Rows of the chunk predicted right
+        int correct = 0;
+
+        ChunkResult(double dataLoss, List<Tensor> params, long forwardNanos, long backwardNanos, int graphNodes) {
+            this.dataLoss = dataLoss;
+            this.params = params;
+            this.forwardNanos = forwardNanos;
+            this.backwardNanos = backwardNanos;
+            this.graphNodes = graphNodes;
         }
     }
-    // Binary Cross Entropy helper function
-    private Value binaryCE(Value groundTruth, Value prediction) {
-        return groundTruth.mul(prediction.log()).add(
-            new Value(1.0).add(groundTruth.mul(new Value(-1.0))).mul(
-                new Value(1.0).add(prediction.mul(new Value(-1.0))).log()
-            )
-        ).mul(new Value(-1.0));
+    // Rows [from..to) of the batch as a [rows, numFeatures] tensor, sharing the batch buffer when possible
+    private static Tensor inputs(Batch batch, int from, int to) {
+        int cols = batch.numFeatures;
+        if (from == 0 && to == batch.rows()) {
+            return new Tensor(batch.features, to, cols);
+        }
+        return new Tensor(Arrays.copyOfRange(batch.features, from * cols, to * cols), to - from, cols);
     }
-    // L2 Regularization helper function
-    private Value l2Regularization(Value loss) {
-        double lambda = 1e-4;
-        Value l2Penalty = new Value(0.0);
-        for (Value param : model.weights()) {
-            l2Penalty = l2Penalty.add(param.pow(2.0));
+    // Mean cross-entropy (binary for a single output column) over the rows of the output logits
+    private Tensor loss(Tensor logits, int[] labels) {
+        if (logits.cols() == 1) {
+            double[] truth = new double[labels.length];
+            for (int i = 0; i < labels.length; i++) {
+                truth[i] = labels[i];
+            }
+            return logits.binaryCrossEntropy(truth);
         }
-        Value l2Loss = new Value(lambda).mul(l2Penalty);
-        loss = loss.add(l2Loss);
-        return loss;
+        return logits.crossEntropy(labels);
+    }
+
+    // Validation loss and accuracy on the graph-free inference path
+    private void validate(double[][] X, int[] y, TrainingMetrics metrics) {
+        Evaluation validation = evaluate(X, y);
+        metrics.validationLoss = validation.loss();
+        metrics.validationSamples = validation.samples();
+        metrics.validationAccuracy = validation.accuracy();
+    }
+
+    /**
+     * Evaluate the current parameters on a labelled dataset in parallel (see Evaluator), without
+     * building autograd graphs or printing anything.
+     */
+    public Evaluation evaluate(double[][] X, int[] y) {
+        return evaluator.evaluate(model.freeze(), X, y);
     }
 
     /**
@@ -167,41 +705,53 @@ public class Trainer {
      * @param y Labels, a 1D array where each element corresponds to the label of the sample in X.
      */
     public double test(double[][] X, int[] y) {
-        double accuracy = 0.0;
-        int correct = 0;
-        for (int i = 0; i < X.length; i++) {
-            List<Value> inputs = new ArrayList<>();
-            for (double d : X[i]) {
-                inputs.add(new Value(d));
-            }
-            List<Value> out = model.forward(inputs);
-            // System.out.println("Input: " + Arrays.toString(X[i]) + "-> Prediction: " + out + ", Ground Truth: " + y[i]);
-            
-            int predicted;
-            // If binary classification, threshold at 0.5
-            if (out.size() == 1) {
-                predicted = out.get(0).data >= 0.5 ? 1 : 0;
-            // Else Multi-class: pick the class with the highest probability
-            } else {
-                double max = Double.NEGATIVE_INFINITY;
-                int maxIdx = -1;
-                for (int j = 0; j < out.size(); j++) {
-                    if (out.get(j).data > max) {
-                        max = out.get(j).data;
-                        maxIdx = j;
-                    }
-                }
-                predicted = maxIdx;
-            }
-            if (predicted == y[i]) {
-                correct++;
-            } else {
-                System.out.printf("Misclassified sample %d: Predicted %d, Actual %d%n", i, predicted, y[i]);
-                System.out.println("Wrong prediction probability: " + out.get(predicted).data + ", Expected value probability: " + out.get(y[i]).data);
+        Evaluation evaluation = evaluator.evaluate(model.freeze(), X, y, true);
+        for (Evaluation.Misclassified m : evaluation.misclassified()) {
+            for (MetricsListener listener : listeners) {
+                listener.onMisclassified(m.sample, m.predicted, m.actual, m.probabilities);
             }
         }
-        
-        accuracy = (double) correct / X.length;
-        return accuracy;   
+        return evaluation.accuracy();
+    }
+
+    /**
+     * Compare the accuracy of a reduced-precision snapshot of the model (e.g. FLOAT32 weights and
+     * activations) with the float64 snapshot on the same data.
+     *
+     * @param dtype Precision of the snapshot under test.
+     * @param tolerance Largest accepted absolute difference between the two accuracies.
+     * @return Accuracy of the reduced-precision snapshot.
+     * @throws IllegalStateException If the accuracies differ by more than tolerance.
+     */
+    public double checkPrecision(double[][] X, int[] y, ModelFile.DType dtype, double tolerance) {
+        double reference = evaluator.evaluate(model.freeze(), X, y).accuracy();
+        double reduced = evaluator.evaluate(model.freeze(dtype), X, y).accuracy();
+        if (Math.abs(reference - reduced) > tolerance) {
+            throw new IllegalStateException(dtype + " accuracy " + reduced + " is not within " + tolerance + " of the float64 accuracy " + reference);
+        }
+        return reduced;
+    }
+
+    /**
+     * Quantize the model to int8 (see Quantizer) and compare it with the float64 snapshot on the
+     * same data.
+     *
+     * @param calibration Inputs the activation scales are calibrated on, e.g. part of the training set.
+     * @param maxDrop Largest accepted accuracy drop of the int8 snapshot.
+     * @return Accuracies, their delta and the parameter sizes of both snapshots.
+     * @throws IllegalStateException If the int8 accuracy drops by more than maxDrop.
+     */
+    public QuantizationReport checkQuantization(double[][] calibration, double[][] X, int[] y, double maxDrop) {
+        QuantizationReport report = QuantizationReport.compare(evaluator, model.freeze(), model.quantize(calibration), X, y);
+        if (!report.withinTolerance(maxDrop)) {
+            throw new IllegalStateException("INT8 accuracy " + report.quantized.accuracy() + " is more than " + maxDrop + " below the float64 accuracy " + report.reference.accuracy());
+        }
+        return report;
+    }
+
+    // Shuts down the worker pool, later training runs on the calling thread
+    @Override
+    public void close() {
+        setThreads(1);
     }
 }
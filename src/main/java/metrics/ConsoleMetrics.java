@@ -0,0 +1,50 @@
+package metrics;
+
+/**
+ * Prints the epoch summaries (and optionally every misclassified test sample) to System.out.
+ */
+public class ConsoleMetrics implements MetricsListener {
+    private final boolean printMisclassified;
+
+    public ConsoleMetrics() {
+        this(true);
+    }
+
+    public ConsoleMetrics(boolean printMisclassified) {
+        this.printMisclassified = printMisclassified;
+    }
+
+    @Override
+    public void onEpoch(TrainingMetrics epoch) {
+        System.out.println("-------------------");
+        System.out.println("Epoch " + epoch.epoch + ":");
+        System.out.printf("Training loss: %.8f%n", epoch.loss);
+        System.out.printf("avgTrainLoss: %.8f%n", epoch.averageLoss());
+        if (epoch.correct >= 0) {
+            System.out.printf("Training accuracy: %.5f%n", epoch.trainingAccuracy());
+        }
+        if (!Double.isNaN(epoch.l2Penalty)) {
+            System.out.printf("L2 penalty: %.8f%n", epoch.l2Penalty);
+        }
+        if (epoch.validationSamples > 0) {
+            System.out.printf("Validation Loss: %.8f%n", epoch.validationLoss);
+            System.out.printf("avgValLoss: %.8f%n", epoch.averageValidationLoss());
+        }
+        if (epoch.earlyStop == TrainingMetrics.EarlyStop.PATIENCE) {
+            System.out.println("Early stopping: no validation loss improvement.");
+        } else if (epoch.earlyStop == TrainingMetrics.EarlyStop.USER) {
+            System.out.println("Early stopping triggered by user.");
+        }
+    }
+
+    @Override
+    public void onMisclassified(int sample, int predicted, int actual, double[] out) {
+        if (!printMisclassified) return;
+        System.out.printf("Misclassified sample %d: Predicted %d, Actual %d%n", sample, predicted, actual);
+        if (out.length > 1) {
+            System.out.println("Wrong prediction probability: " + out[predicted] + ", Expected value probability: " + out[actual]);
+        } else {
+            System.out.println("Predicted probability of class 1: " + out[0]);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps every event in memory, e.g. for plotting loss curves or comparing runs.
+ */
+public class InMemoryMetrics implements MetricsListener {
+    private final List<TrainingMetrics> steps = new ArrayList<>();
+    private final List<TrainingMetrics> epochs = new ArrayList<>();
+    private int misclassified = 0;
+
+    @Override
+    public synchronized void onStep(TrainingMetrics step) {
+        steps.add(step);
+    }
+    @Override
+    public synchronized void onEpoch(TrainingMetrics epoch) {
+        epochs.add(epoch);
+    }
+    @Override
+    public synchronized void onMisclassified(int sample, int predicted, int actual, double[] out) {
+        misclassified++;
+    }
+
+    public synchronized List<TrainingMetrics> steps() {
+        return new ArrayList<>(steps);
+    }
+    public synchronized List<TrainingMetrics> epochs() {
+        return new ArrayList<>(epochs);
+    }
+    public synchronized int misclassified() {
+        return misclassified;
+    }
+    public synchronized void clear() {
+        steps.clear();
+        epochs.clear();
+        misclassified = 0;
+    }
+}
@@ -0,0 +1,92 @@
+package metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the latest metrics as an MBean (j-neural-core:type=Training,name=...), so a running
+ * training job can be watched from JConsole or any JMX client. Samples and timings are totals
+ * over the completed epochs, the other attributes follow the latest step or epoch.
+ */
+public class JmxMetrics implements MetricsListener, JmxMetricsMBean, AutoCloseable {
+    private final ObjectName objectName;
+    private volatile int epoch = -1;
+    private volatile int step;
+    private volatile long samples;
+    private volatile double lastLoss = Double.NaN;
+    private volatile double lastTrainingAccuracy = Double.NaN;
+    private volatile double lastValidationLoss = Double.NaN;
+    private volatile double lastValidationAccuracy = Double.NaN;
+    private volatile double samplesPerSecond = Double.NaN;
+    private volatile long forwardNanos;
+    private volatile long backwardNanos;
+    private volatile long updateNanos;
+    private volatile int graphNodes = -1;
+    private volatile double gradientNorm = Double.NaN;
+    private volatile double learningRate = Double.NaN;
+    private volatile String earlyStop;
+
+    public JmxMetrics(String name) throws JMException {
+        this.objectName = new ObjectName("j-neural-core:type=Training,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    @Override
+    public void onStep(TrainingMetrics m) {
+        epoch = m.epoch;
+        step = m.step;
+        lastLoss = m.averageLoss();
+        lastTrainingAccuracy = m.trainingAccuracy();
+        graphNodes = m.graphNodes;
+        gradientNorm = m.gradientNorm;
+        learningRate = m.learningRate;
+    }
+
+    @Override
+    public void onEpoch(TrainingMetrics m) {
+        epoch = m.epoch;
+        step = m.step;
+        samples += m.samples;
+        lastLoss = m.averageLoss();
+        lastTrainingAccuracy = m.trainingAccuracy();
+        forwardNanos += m.forwardNanos;
+        backwardNanos += m.backwardNanos;
+        updateNanos += m.updateNanos;
+        if (m.validationSamples > 0) {
+            lastValidationLoss = m.averageValidationLoss();
+            lastValidationAccuracy = m.validationAccuracy;
+        }
+        samplesPerSecond = m.samplesPerSecond;
+        learningRate = m.learningRate;
+        if (m.graphNodes >= 0) graphNodes = m.graphNodes;
+        if (!Double.isNaN(m.gradientNorm)) gradientNorm = m.gradientNorm;
+        if (m.earlyStop != null) earlyStop = m.earlyStop.name();
+    }
+
+    @Override public int getEpoch() { return epoch; }
+    @Override public int getStep() { return step; }
+    @Override public long getSamples() { return samples; }
+    @Override public double getLastLoss() { return lastLoss; }
+    @Override public double getLastTrainingAccuracy() { return lastTrainingAccuracy; }
+    @Override public double getLastValidationLoss() { return lastValidationLoss; }
+    @Override public double getLastValidationAccuracy() { return lastValidationAccuracy; }
+    @Override public double getSamplesPerSecond() { return samplesPerSecond; }
+    @Override public long getForwardNanos() { return forwardNanos; }
+    @Override public long getBackwardNanos() { return backwardNanos; }
+    @Override public long getUpdateNanos() { return updateNanos; }
+    @Override public int getGraphNodes() { return graphNodes; }
+    @Override public double getGradientNorm() { return gradientNorm; }
+    @Override public double getLearningRate() { return learningRate; }
+    @Override public String getEarlyStop() { return earlyStop; }
+
+    @Override
+    public void close() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package metrics;
+
+// Attributes published by JmxMetrics
+public interface JmxMetricsMBean {
+    int getEpoch();
+    int getStep();
+    long getSamples();
+    double getLastLoss();
+    double getLastTrainingAccuracy();
+    double getLastValidationLoss();
+    double getLastValidationAccuracy();
+    double getSamplesPerSecond();
+    long getForwardNanos();
+    long getBackwardNanos();
+    long getUpdateNanos();
+    int getGraphNodes();
+    double getGradientNorm();
+    double getLearningRate();
+    // PATIENCE or USER once training stopped early, null otherwise
+    String getEarlyStop();
+}
@@ -0,0 +1,101 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Appends every step and epoch event to a file, as CSV (with a header line) or as JSON lines.
+ * Write errors are reported once on System.err and do not interrupt training.
+ */
+public class MetricsFile implements MetricsListener, AutoCloseable {
+    public enum Format { CSV, JSON_LINES }
+
+    private static final String[] COLUMNS = {
+        "kind", "epoch", "step", "samples", "loss", "trainingAccuracy", "validationLoss", "validationSamples", "validationAccuracy",
+        "samplesPerSecond", "forwardNanos", "backwardNanos", "updateNanos", "graphNodes", "allocatedBytes",
+        "gradientNorm", "learningRate", "l2Penalty", "earlyStop"
+    };
+
+    private final BufferedWriter writer;
+    private final Format format;
+    private boolean failed = false;
+
+    public MetricsFile(Path path, Format format) throws IOException {
+        this.writer = Files.newBufferedWriter(path);
+        this.format = format;
+        if (format == Format.CSV) {
+            writer.write(String.join(",", COLUMNS));
+            writer.newLine();
+        }
+    }
+
+    @Override
+    public synchronized void onStep(TrainingMetrics step) {
+        write(step);
+    }
+    @Override
+    public synchronized void onEpoch(TrainingMetrics epoch) {
+        write(epoch);
+        flush();
+    }
+
+    private void write(TrainingMetrics m) {
+        Object[] values = {
+            m.kind, m.epoch, m.step, m.samples, m.loss, m.trainingAccuracy(), m.validationLoss, m.validationSamples, m.validationAccuracy,
+            m.samplesPerSecond, m.forwardNanos, m.backwardNanos, m.updateNanos, m.graphNodes, m.allocatedBytes,
+            m.gradientNorm, m.learningRate, m.l2Penalty, m.earlyStop
+        };
+        StringBuilder line = new StringBuilder(256);
+        if (format == Format.JSON_LINES) line.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append(',');
+            if (format == Format.JSON_LINES) line.append('"').append(COLUMNS[i]).append("\":");
+            line.append(format(values[i]));
+        }
+        if (format == Format.JSON_LINES) line.append('}');
+        try {
+            writer.write(line.toString());
+            writer.newLine();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private String format(Object value) {
+        if (value instanceof Double) {
+            double d = (Double) value;
+            // JSON has no NaN, missing values are null there and empty in CSV
+            if (Double.isNaN(d) || Double.isInfinite(d)) return (format == Format.JSON_LINES) ? "null" : "";
+            return String.format(Locale.ROOT, "%.10g", d);
+        }
+        if (value == null) return (format == Format.JSON_LINES) ? "null" : "";
+        if (value instanceof Enum) {
+            String name = value.toString().toLowerCase(Locale.ROOT);
+            return (format == Format.JSON_LINES) ? "\"" + name + "\"" : name;
+        }
+        return String.valueOf(value);
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (!failed) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+            failed = true;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
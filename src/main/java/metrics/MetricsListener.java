@@ -0,0 +1,16 @@
+package metrics;
+
+/**
+ * Receives metrics events from Trainer. Calls come from the training thread; sinks that are
+ * read from other threads (e.g. JMX) must publish the values safely themselves.
+ */
+public interface MetricsListener {
+    // After every optimizer step, only when step metrics are enabled on the Trainer
+    default void onStep(TrainingMetrics step) {}
+
+    // After every epoch, including the validation results
+    default void onEpoch(TrainingMetrics epoch) {}
+
+    // A test sample the model got wrong, out holds its output probabilities (reused between calls)
+    default void onMisclassified(int sample, int predicted, int actual, double[] out) {}
+}
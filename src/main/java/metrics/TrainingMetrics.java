@@ -0,0 +1,60 @@
+package metrics;
+
+/**
+ * One metrics event of a training run: a single optimizer step or a whole epoch.
+ *
+ * Fields that do not apply to an event (or were not measured) are NaN, -1 for counts, or null.
+ * Losses are sums over the samples, see averageLoss() and averageValidationLoss().
+ */
+public class TrainingMetrics {
+    public enum Kind { STEP, EPOCH }
+    // Why training stops after an epoch: validation loss stopped improving, or the user pressed 'Q'
+    public enum EarlyStop { PATIENCE, USER }
+
+    public final Kind kind;
+    public final int epoch;
+    // Step number within the epoch, or the number of steps for an epoch event
+    public int step;
+    public int samples;
+    public double loss;
+    // Training samples whose logits (before the update of their step) predicted the label, -1 if not counted
+    public int correct = -1;
+    public double validationLoss = Double.NaN;
+    public int validationSamples = 0;
+    public double validationAccuracy = Double.NaN;
+    public double samplesPerSecond = Double.NaN;
+    // Time split of the forward pass, backward pass and parameter update (summed over workers)
+    public long forwardNanos;
+    public long backwardNanos;
+    public long updateNanos;
+    // Nodes of the autograd graph of one step
+    public int graphNodes = -1;
+    // Bytes allocated by the training thread, -1 if the JVM does not report it
+    public long allocatedBytes = -1;
+    // L2 norm of the parameter gradients of the (last) update
+    public double gradientNorm = Double.NaN;
+    public double learningRate = Double.NaN;
+    public double l2Penalty = Double.NaN;
+    // Set on the last epoch event when training stops before the requested number of epochs
+    public EarlyStop earlyStop;
+
+    public TrainingMetrics(Kind kind, int epoch) {
+        this.kind = kind;
+        this.epoch = epoch;
+    }
+
+    public double averageLoss() {
+        return loss / samples;
+    }
+    public double averageValidationLoss() {
+        return validationLoss / validationSamples;
+    }
+    public double trainingAccuracy() {
+        return (correct < 0) ? Double.NaN : (double) correct / samples;
+    }
+
+    @Override
+    public String toString() {
+        return "TrainingMetrics(" + kind + ", epoch=" + epoch + ", step=" + step + ", samples=" + samples + ", loss=" + loss + ")";
+    }
+}
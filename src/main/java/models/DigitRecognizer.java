@@ -1,11 +1,20 @@
 package models;
 
+import java.util.Arrays;
+
 import core.MLP;
+import core.ModelFile;
 import engine.Trainer;
 import data.DigitDataLoader;
 import data.DigitDataLoader.DataSet;
 
 public class DigitRecognizer {
+    // Largest accepted accuracy drop of the float32 inference path
+    static final double FLOAT32_TOLERANCE = 0.005;
+    // Largest accepted accuracy drop of the int8 inference path, and its calibration sample size
+    static final double INT8_MAX_DROP = 0.01;
+    static final int CALIBRATION_SAMPLES = 500;
+
     public static void main(String[] args) {
         double[][] X = null;   // training images
         int[] y = null;     // training labels
@@ -48,7 +57,28 @@ public class DigitRecognizer {
         String modelPath = "src/main/java/models/DigitRecognizer_0.96438.model";
         modelDigit.loadModel(modelPath);
         // trainer.train(X, y, 0.007, 150, X_val, y_val, true, 100, 10);
-        
+        // Adam typically needs far fewer epochs:
+        // trainer.setOptimizer(new Adam(0.001));
+        // trainer.train(X, y, 0.001, 30, X_val, y_val, false, 0, 0);
+        // Long runs can checkpoint every epoch and pick up where a preempted run stopped:
+        // Checkpointer checkpoints = new Checkpointer(Paths.get("checkpoints/digits"));
+        // trainer.setCheckpointer(checkpoints);
+        // if (Files.exists(checkpoints.latestPath())) trainer.resume(checkpoints.latestPath());
+        // trainer.train(X, y, 0.007, 150, X_val, y_val, true, 100, 10);
+        // checkpoints.close();  // best.model in the directory holds the lowest validation loss
+        // Hyperparameter search over all cores, bad configurations stopped early by successive halving:
+        // SearchSpace space = new SearchSpace();
+        // space.setHiddenLayers(new int[]{64, 32}, new int[]{128, 64}, new int[]{32});
+        // space.setLearningRates(0.003, 0.007, 0.01);
+        // space.setDecays(SearchSpace.Decay.NONE, new SearchSpace.Decay(100, 10));
+        // Sweep sweep = new Sweep(new DataSet(X, y), new DataSet(X_val, y_val));
+        // sweep.setEpochs(150);
+        // sweep.setSuccessiveHalving(5, 3);
+        // sweep.setListener((rung, epochs, ranked) -> System.out.printf("Rung %d: %d trials at %d epochs, best validation loss %.6f%n",
+        //         rung, ranked.size(), epochs, ranked.isEmpty() ? Double.NaN : ranked.get(0).validationLoss()));
+        // SweepResults results = sweep.run(space.grid());
+        // System.out.print(results);  // ranked table, results.write(path) for CSV
+
         // Loading test digit data
         double[][] testX = null;   // test images
         int[] testY = null;     // test labels
@@ -64,6 +94,15 @@ public class DigitRecognizer {
 
         double accuracy = trainer.test(testX, testY);
         System.out.println("Test accuracy: " + accuracy);
+
+        // Float32 snapshot (half the memory of the weights and activations) must match within the tolerance
+        double accuracy32 = trainer.checkPrecision(testX, testY, ModelFile.DType.FLOAT32, FLOAT32_TOLERANCE);
+        System.out.println("Float32 test accuracy: " + accuracy32);
+
+        // Int8 snapshot calibrated on part of the training set, gated on its accuracy drop
+        double[][] calibration = Arrays.copyOf(X, Math.min(CALIBRATION_SAMPLES, X.length));
+        System.out.println(trainer.checkQuantization(calibration, testX, testY, INT8_MAX_DROP));
+        // modelDigit.saveQuantizedModel("src/main/java/models/DigitRecognizer.int8.model", calibration);
         // String modelPath = "src/main/java/models/DigitRecognizer.model";
         // modelDigit.saveModel(modelPath);
     }
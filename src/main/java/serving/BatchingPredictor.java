@@ -0,0 +1,253 @@
+package serving;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import core.InferenceModel;
+
+/**
+ * Thread-safe inference front end that coalesces concurrent single-sample requests into micro-batches.
+ *
+ * Callers submit one sample and get a future. A dispatcher thread takes the oldest pending request,
+ * waits at most maxDelayMicros (measured from that request's arrival) for up to maxBatchSize - 1 more,
+ * runs one batched forward over the immutable model snapshot and completes every caller's future.
+ */
+public class BatchingPredictor implements AutoCloseable {
+    // Snapshot used for the next batch, fixed or the live version of a ModelRegistry
+    private final Supplier<InferenceModel> model;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // Metrics
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong largestBatch = new AtomicLong();
+    private final LatencyRecorder latencies = new LatencyRecorder(4096);
+
+    /**
+     * @param model Immutable model snapshot shared by all requests.
+     * @param maxBatchSize Maximum number of requests per forward pass.
+     * @param maxDelayMicros Latency budget a request may wait for others to join its batch.
+     */
+    public BatchingPredictor(InferenceModel model, int maxBatchSize, long maxDelayMicros) {
+        this(() -> model, maxBatchSize, maxDelayMicros);
+    }
+
+    /**
+     * Serves the live version of the registry: every batch runs on the version current when it
+     * starts, so a deploy takes effect from the next batch without pausing requests.
+     */
+    public BatchingPredictor(ModelRegistry registry, int maxBatchSize, long maxDelayMicros) {
+        this(() -> {
+            ModelRegistry.ModelVersion version = registry.current();
+            if (version == null) {
+                throw new IllegalStateException("No model deployed.");
+            }
+            return version.model;
+        }, maxBatchSize, maxDelayMicros);
+    }
+
+    private BatchingPredictor(Supplier<InferenceModel> model, int maxBatchSize, long maxDelayMicros) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        }
+        if (maxDelayMicros < 0) {
+            throw new IllegalArgumentException("Maximum delay must not be negative.");
+        }
+        this.model = model;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.dispatcher = new Thread(this::dispatchLoop, "batching-predictor");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    // Queues one sample, the future completes with its output probabilities
+    public CompletableFuture<double[]> submit(double[] input) {
+        int numInputs = model.get().numInputs();
+        if (input.length != numInputs) {
+            throw new IllegalArgumentException("Expected " + numInputs + " inputs, got " + input.length);
+        }
+        if (!running) {
+            throw new IllegalStateException("Predictor is closed.");
+        }
+        Request request = new Request(input.clone());
+        queue.add(request);
+        // Closed concurrently after the dispatcher drained the queue
+        if (!running && queue.remove(request)) {
+            request.future.completeExceptionally(new IllegalStateException("Predictor is closed."));
+        }
+        return request.future;
+    }
+
+    // Blocking convenience wrapper around submit()
+    public double[] predict(double[] input) {
+        return submit(input).join();
+    }
+
+    private void dispatchLoop() {
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (running) {
+                try {
+                    Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) continue;
+                    batch.add(first);
+                    long deadline = first.enqueuedAt + maxDelayNanos;
+                    while (batch.size() < maxBatchSize) {
+                        long wait = deadline - System.nanoTime();
+                        Request next = (wait > 0) ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) break;
+                        batch.add(next);
+                    }
+                    run(batch);
+                } catch (InterruptedException e) {
+                    // Closed while gathering: the requests already taken off the queue fail too
+                    for (Request request : batch) {
+                        request.future.completeExceptionally(new IllegalStateException("Predictor is closed."));
+                    }
+                    break;
+                } catch (Throwable e) {
+                    // Anything escaping run() fails only this batch, the dispatcher keeps serving
+                    for (Request request : batch) {
+                        request.future.completeExceptionally(e);
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        } finally {
+            // Failing whatever is left after close(), or if the dispatcher dies anyway
+            running = false;
+            Request pending;
+            while ((pending = queue.poll()) != null) {
+                pending.future.completeExceptionally(new IllegalStateException("Predictor is closed."));
+            }
+        }
+    }
+
+    private void run(List<Request> batch) {
+        int rows = batch.size();
+        double[][] in = new double[rows][];
+        for (int r = 0; r < rows; r++) {
+            in[r] = batch.get(r).input;
+        }
+        double[][] out;
+        try {
+            InferenceModel snapshot = model.get();
+            out = new double[rows][snapshot.numOutputs()];
+            snapshot.predictBatch(in, out);
+        } catch (Throwable e) {
+            // Errors too (e.g. OutOfMemoryError, LinkageError): callers must never wait on a lost batch
+            for (Request request : batch) {
+                request.future.completeExceptionally(e);
+            }
+            return;
+        }
+        // Metrics first, so they already include this batch when the callers resume
+        long now = System.nanoTime();
+        for (Request request : batch) {
+            latencies.record(now - request.enqueuedAt);
+        }
+        requests.addAndGet(rows);
+        batches.incrementAndGet();
+        largestBatch.accumulateAndGet(rows, Math::max);
+        for (int r = 0; r < rows; r++) {
+            batch.get(r).future.complete(out[r]);
+        }
+    }
+
+    public Metrics metrics() {
+        long b = batches.get();
+        long r = requests.get();
+        return new Metrics(queue.size(), r, b, (b == 0) ? 0.0 : (double) r / b, largestBatch.get(),
+                latencies.percentileMicros(0.50), latencies.percentileMicros(0.99));
+    }
+
+    // Stops the dispatcher, requests still queued complete exceptionally
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Metrics {
+        public final int queueDepth;
+        public final long requests;
+        public final long batches;
+        public final double averageBatchSize;
+        public final long largestBatchSize;
+        // Request latency from submit() to completion over the most recent requests
+        public final double p50Micros;
+        public final double p99Micros;
+
+        Metrics(int queueDepth, long requests, long batches, double averageBatchSize, long largestBatchSize, double p50Micros, double p99Micros) {
+            this.queueDepth = queueDepth;
+            this.requests = requests;
+            this.batches = batches;
+            this.averageBatchSize = averageBatchSize;
+            this.largestBatchSize = largestBatchSize;
+            this.p50Micros = p50Micros;
+            this.p99Micros = p99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("queue=%d requests=%d batches=%d avgBatch=%.2f maxBatch=%d p50=%.1fus p99=%.1fus",
+                    queueDepth, requests, batches, averageBatchSize, largestBatchSize, p50Micros, p99Micros);
+        }
+    }
+
+    private static class Request {
+        final double[] input;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<double[]> future = new CompletableFuture<>();
+
+        Request(double[] input) {
+            this.input = input;
+        }
+    }
+
+    // Ring buffer of the most recent latencies (in nanoseconds)
+    private static class LatencyRecorder {
+        private final long[] samples;
+        private int count = 0;
+        private int next = 0;
+
+        LatencyRecorder(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+
+        double percentileMicros(double p) {
+            long[] sorted;
+            synchronized (this) {
+                if (count == 0) return 0.0;
+                sorted = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, idx)] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package serving;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicReference;
+
+import core.InferenceModel;
+import core.ModelFile;
+import engine.Evaluator;
+
+/**
+ * Versioned, hot-swappable holder of the model used for live inference.
+ *
+ * A deploy loads the new model file into an immutable InferenceModel off the request path,
+ * validates it (layer sizes, the CRC32 of the model file, an optional SHA-256 of the whole file
+ * and an optional canary accuracy on a held-out set) and only then swaps the current version with
+ * a single atomic reference write. Readers take current() once per request, so in-flight
+ * predictions finish on the version they started with and never see half-updated weights.
+ * A failed deploy leaves the current version untouched.
+ */
+public class ModelRegistry {
+    /** One deployed model: an immutable snapshot plus where it came from. */
+    public static final class ModelVersion {
+        public final long version;
+        public final String source;
+        public final InferenceModel model;
+        // Accuracy on the canary set, NaN when no canary set is configured
+        public final double canaryAccuracy;
+        public final long deployedAtMillis;
+
+        ModelVersion(long version, String source, InferenceModel model, double canaryAccuracy) {
+            this.version = version;
+            this.source = source;
+            this.model = model;
+            this.canaryAccuracy = canaryAccuracy;
+            this.deployedAtMillis = System.currentTimeMillis();
+        }
+
+        @Override
+        public String toString() {
+            return "ModelVersion(" + version + ", source=" + source + ", dtype=" + model.dtype() + ", canary accuracy=" + canaryAccuracy + ")";
+        }
+    }
+
+    private final int[] layerSizes;
+    private final AtomicReference<ModelVersion> current = new AtomicReference<>();
+    // Version before the last swap, for rollback()
+    private volatile ModelVersion previous = null;
+    private long nextVersion = 1;
+
+    private double[][] canaryX = null;
+    private int[] canaryY = null;
+    private double minCanaryAccuracy;
+
+    /**
+     * @param layerSizes Layer sizes every deployed model must have, so callers can rely on the
+     *                   number of inputs and outputs across swaps.
+     */
+    public ModelRegistry(int[] layerSizes) {
+        this.layerSizes = layerSizes.clone();
+    }
+
+    /**
+     * Require every new version to reach the given accuracy on a held-out canary set before it
+     * goes live.
+     */
+    public synchronized void setCanary(double[][] X, int[] y, double minAccuracy) {
+        if (X.length != y.length || X.length == 0) {
+            throw new IllegalArgumentException("Canary set must be non-empty with one label per sample.");
+        }
+        this.canaryX = X;
+        this.canaryY = y;
+        this.minCanaryAccuracy = minAccuracy;
+    }
+
+    // The live version, null before the first deploy
+    public ModelVersion current() {
+        return current.get();
+    }
+
+    // Scores one sample on the live version
+    public void predict(double[] in, double[] out) {
+        ModelVersion version = current.get();
+        if (version == null) {
+            throw new IllegalStateException("No model deployed.");
+        }
+        version.model.predict(in, out);
+    }
+
+    public ModelVersion deploy(Path path) throws IOException {
+        return deploy(path, null);
+    }
+
+    /**
+     * Load, validate and swap in a binary model file (see ModelFile).
+     *
+     * @param sha256 Expected hex SHA-256 of the file (e.g. from the release manifest), or null.
+     * @return The new live version.
+     * @throws IOException If the file cannot be read, fails a checksum or has other layer sizes.
+     * @throws IllegalStateException If the canary accuracy is below the configured minimum.
+     */
+    public ModelVersion deploy(Path path, String sha256) throws IOException {
+        // Read once into the heap, not mapped: a mapping would follow a later in-place overwrite of
+        // the file, so the checked hash and the parsed bytes could differ (or a truncation fault)
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (sha256 != null) {
+            String actual = sha256(bytes.duplicate());
+            if (!actual.equalsIgnoreCase(sha256)) {
+                throw new IOException("SHA-256 of " + path + " is " + actual + ", expected " + sha256);
+            }
+        }
+        if (bytes.remaining() < 4 || bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt() != ModelFile.MAGIC) {
+            throw new IOException(path + " is not a binary model file, convert it with MLP.loadModel and MLP.saveModel");
+        }
+        // The CRC32 of the parameters is checked while reading
+        ModelFile file = ModelFile.read(bytes, path.toString());
+        if (!Arrays.equals(file.layerSizes, layerSizes)) {
+            throw new IOException("Model file layer sizes " + Arrays.toString(file.layerSizes) + " do not match " + Arrays.toString(layerSizes));
+        }
+        return deploy(file.toInferenceModel(), path.toString());
+    }
+
+    /**
+     * Validate and swap in an in-memory snapshot, e.g. MLP.freeze() of a model trained in process.
+     *
+     * @param source Description of the origin, for logs.
+     */
+    public synchronized ModelVersion deploy(InferenceModel model, String source) {
+        if (!Arrays.equals(model.layerSizes(), layerSizes)) {
+            throw new IllegalArgumentException("Model layer sizes " + Arrays.toString(model.layerSizes()) + " do not match " + Arrays.toString(layerSizes));
+        }
+        double accuracy = Double.NaN;
+        if (canaryX != null) {
+            accuracy = new Evaluator().evaluate(model, canaryX, canaryY).accuracy();
+            if (accuracy < minCanaryAccuracy) {
+                throw new IllegalStateException("Canary accuracy " + accuracy + " of " + source + " is below " + minCanaryAccuracy);
+            }
+        }
+        ModelVersion version = new ModelVersion(nextVersion++, source, model, accuracy);
+        previous = current.getAndSet(version);
+        return version;
+    }
+
+    // Swaps back to the version before the last deploy (without validating it again)
+    public synchronized ModelVersion rollback() {
+        ModelVersion target = previous;
+        if (target == null) {
+            throw new IllegalStateException("No previous version to roll back to.");
+        }
+        previous = current.getAndSet(target);
+        return target;
+    }
+
+    private static String sha256(ByteBuffer bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(bytes);
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package tuning;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Hyperparameter search space of a Sweep: candidate hidden layer sizes, learning rates, decay
+ * schedules, batch sizes and L2 coefficients. grid() enumerates every combination, sample() draws
+ * random configurations (with the learning rate log-uniform when a range is set).
+ */
+public class SearchSpace {
+    /** Learning rate decay as in Trainer.train(): times 0.9 every `every` epochs after `start`. */
+    public static final class Decay {
+        public static final Decay NONE = new Decay(0, 0);
+
+        public final int start;
+        public final int every;
+
+        public Decay(int start, int every) {
+            if (start < 0 || every < 0) {
+                throw new IllegalArgumentException("Decay start and interval must not be negative.");
+            }
+            this.start = start;
+            this.every = every;
+        }
+
+        public boolean enabled() {
+            return every > 0;
+        }
+
+        @Override
+        public String toString() {
+            return enabled() ? start + "/" + every : "none";
+        }
+    }
+
+    /** One point of the search space. */
+    public static final class Config {
+        public final int[] hiddenLayers;
+        public final double learningRate;
+        public final Decay decay;
+        public final int batchSize;
+        public final double l2Lambda;
+
+        public Config(int[] hiddenLayers, double learningRate, Decay decay, int batchSize, double l2Lambda) {
+            if (learningRate <= 0 || batchSize < 1 || l2Lambda < 0) {
+                throw new IllegalArgumentException("Expected a positive learning rate and batch size and a non-negative L2 coefficient.");
+            }
+            this.hiddenLayers = hiddenLayers.clone();
+            this.learningRate = learningRate;
+            this.decay = decay;
+            this.batchSize = batchSize;
+            this.l2Lambda = l2Lambda;
+        }
+
+        // Full layer sizes of the MLP for the given number of inputs and outputs
+        public int[] layerSizes(int numInputs, int numOutputs) {
+            int[] sizes = new int[hiddenLayers.length + 2];
+            sizes[0] = numInputs;
+            System.arraycopy(hiddenLayers, 0, sizes, 1, hiddenLayers.length);
+            sizes[sizes.length - 1] = numOutputs;
+            return sizes;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("hidden=%s lr=%.3g decay=%s batch=%d l2=%.3g", Arrays.toString(hiddenLayers), learningRate, decay, batchSize, l2Lambda);
+        }
+    }
+
+    private List<int[]> hiddenLayers = List.of(new int[]{64, 32});
+    private double[] learningRates = {0.007};
+    private double minLearningRate = Double.NaN;
+    private double maxLearningRate = Double.NaN;
+    private Decay[] decays = {Decay.NONE};
+    private int[] batchSizes = {1};
+    private double[] l2Lambdas = {1e-4};
+
+    public void setHiddenLayers(int[]... hiddenLayers) {
+        if (hiddenLayers.length == 0) {
+            throw new IllegalArgumentException("Expected at least one hidden layer configuration.");
+        }
+        this.hiddenLayers = new ArrayList<>();
+        for (int[] layers : hiddenLayers) {
+            this.hiddenLayers.add(layers.clone());
+        }
+    }
+    public void setLearningRates(double... learningRates) {
+        this.learningRates = nonEmpty(learningRates).clone();
+    }
+    // Log-uniform learning rate range used by sample() instead of the learning rate list
+    public void setLearningRateRange(double min, double max) {
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Expected 0 < min <= max, got " + min + " and " + max);
+        }
+        this.minLearningRate = min;
+        this.maxLearningRate = max;
+    }
+    public void setDecays(Decay... decays) {
+        if (decays.length == 0) {
+            throw new IllegalArgumentException("Expected at least one decay schedule.");
+        }
+        this.decays = decays.clone();
+    }
+    public void setBatchSizes(int... batchSizes) {
+        if (batchSizes.length == 0) {
+            throw new IllegalArgumentException("Expected at least one batch size.");
+        }
+        this.batchSizes = batchSizes.clone();
+    }
+    public void setL2Lambdas(double... l2Lambdas) {
+        this.l2Lambdas = nonEmpty(l2Lambdas).clone();
+    }
+
+    // Every combination of the candidate values
+    public List<Config> grid() {
+        List<Config> configs = new ArrayList<>();
+        for (int[] layers : hiddenLayers) {
+            for (double learningRate : learningRates) {
+                for (Decay decay : decays) {
+                    for (int batchSize : batchSizes) {
+                        for (double l2Lambda : l2Lambdas) {
+                            configs.add(new Config(layers, learningRate, decay, batchSize, l2Lambda));
+                        }
+                    }
+                }
+            }
+        }
+        return configs;
+    }
+
+    // count configurations drawn independently and uniformly from the candidates, reproducibly for a seed
+    public List<Config> sample(int count, long seed) {
+        Random random = new Random(seed);
+        List<Config> configs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            double learningRate = Double.isNaN(minLearningRate)
+                    ? learningRates[random.nextInt(learningRates.length)]
+                    : Math.exp(Math.log(minLearningRate) + random.nextDouble() * (Math.log(maxLearningRate) - Math.log(minLearningRate)));
+            configs.add(new Config(hiddenLayers.get(random.nextInt(hiddenLayers.size())), learningRate,
+                    decays[random.nextInt(decays.length)], batchSizes[random.nextInt(batchSizes.length)],
+                    l2Lambdas[random.nextInt(l2Lambdas.length)]));
+        }
+        return configs;
+    }
+
+    private static double[] nonEmpty(double[] values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("Expected at least one value.");
+        }
+        return values;
+    }
+}
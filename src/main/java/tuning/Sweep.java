@@ -0,0 +1,214 @@
+package tuning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import core.MLP;
+import data.DataPipeline;
+import data.DigitDataLoader.DataSet;
+import engine.Checkpoint;
+import engine.Evaluator;
+import engine.Optimizer;
+import engine.SGD;
+import engine.Trainer;
+import metrics.MetricsListener;
+import metrics.TrainingMetrics;
+import tuning.SearchSpace.Config;
+
+/**
+ * Hyperparameter sweep: trains one MLP and Trainer per configuration, several trials at a time on
+ * a worker pool, all reading the same training and validation sets (never modified, so they are
+ * shared instead of copied per trial).
+ *
+ * With successive halving, every trial first trains for minEpochs; only the best 1/eta of them by
+ * validation loss continue, for eta times as many epochs in total, and so on until the full
+ * number of epochs. Promoted trials continue from their weights and optimizer state, so a trial
+ * that reaches the last rung is trained exactly like an uninterrupted run. Every trial runs on
+ * the calling worker only (single-threaded Trainer and Evaluator) and is seeded, so results do
+ * not depend on the number of workers.
+ */
+public class Sweep {
+    private final DataSet train;
+    private final DataSet validation;
+    private final int numOutputs;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int epochs = 30;
+    // Successive halving rungs, disabled when minEpochs is 0
+    private int minEpochs = 0;
+    private int eta = 3;
+    private long seed = 42;
+    private Supplier<Optimizer> optimizer = () -> new SGD(0.01);
+    private SweepListener listener = null;
+
+    /**
+     * @param train Training set, shared read-only by all trials.
+     * @param validation Validation set trials are ranked (and halved) on.
+     */
+    public Sweep(DataSet train, DataSet validation) {
+        if (train.size() == 0 || validation.size() == 0) {
+            throw new IllegalArgumentException("Training and validation sets must not be empty.");
+        }
+        this.train = train;
+        this.validation = validation;
+        int numClasses = 0;
+        for (int label : train.labels) {
+            numClasses = Math.max(numClasses, label + 1);
+        }
+        // A single sigmoid output for two classes, as in BinaryClassifier
+        this.numOutputs = (numClasses == 2) ? 1 : numClasses;
+    }
+
+    // Trials trained at the same time
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be at least 1.");
+        }
+        this.threads = threads;
+    }
+    // Epochs of the trials that are not stopped early
+    public void setEpochs(int epochs) {
+        if (epochs < 1) {
+            throw new IllegalArgumentException("Number of epochs must be at least 1.");
+        }
+        this.epochs = epochs;
+    }
+    /**
+     * Stop bad trials early: after minEpochs, then after eta times as many epochs and so on, only
+     * the best ceil(n / eta) trials by validation loss keep training. minEpochs 0 disables it.
+     */
+    public void setSuccessiveHalving(int minEpochs, int eta) {
+        if (minEpochs < 0 || eta < 2) {
+            throw new IllegalArgumentException("Expected a non-negative number of epochs and eta of at least 2.");
+        }
+        this.minEpochs = minEpochs;
+        this.eta = eta;
+    }
+    // Base seed, trial i initializes and shuffles with seed + i
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+    // New update rule per trial (its learning rate is replaced by the trial's), plain SGD by default
+    public void setOptimizer(Supplier<Optimizer> optimizer) {
+        this.optimizer = optimizer;
+    }
+
+    // Progress after every rung, e.g. to log it; none by default
+    public void setListener(SweepListener listener) {
+        this.listener = listener;
+    }
+
+    // Runs every configuration (e.g. SearchSpace.grid() or sample()) and ranks the trials
+    public SweepResults run(List<Config> configs) {
+        List<SweepResults.Trial> trials = new ArrayList<>(configs.size());
+        for (Config config : configs) {
+            trials.add(new SweepResults.Trial(trials.size(), config, seed + trials.size()));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<SweepResults.Trial> active = new ArrayList<>(trials);
+            int budget = (minEpochs > 0) ? Math.min(minEpochs, epochs) : epochs;
+            for (int rung = 0; !active.isEmpty(); rung++) {
+                int rungEpochs = budget;
+                List<ForkJoinTask<?>> tasks = new ArrayList<>(active.size());
+                for (SweepResults.Trial trial : active) {
+                    tasks.add(pool.submit(() -> train(trial, rungEpochs)));
+                }
+                for (ForkJoinTask<?> task : tasks) {
+                    task.join();
+                }
+                active.removeIf(t -> t.status() == SweepResults.Status.FAILED);
+                active.sort(SweepResults.RANKING);
+                if (listener != null) {
+                    listener.onRung(rung, budget, Collections.unmodifiableList(new ArrayList<>(active)));
+                }
+                if (budget >= epochs) {
+                    for (SweepResults.Trial trial : active) {
+                        trial.finish();
+                    }
+                    break;
+                }
+                int keep = Math.max(1, (active.size() + eta - 1) / eta);
+                for (SweepResults.Trial trial : active.subList(keep, active.size())) {
+                    trial.stop();
+                }
+                active = new ArrayList<>(active.subList(0, keep));
+                budget = (int) Math.min(epochs, (long) budget * eta);
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new SweepResults(trials);
+    }
+
+    // Trains a trial up to the given total number of epochs, continuing from its previous rung
+    private void train(SweepResults.Trial trial, int totalEpochs) {
+        long start = System.nanoTime();
+        try {
+            Config config = trial.config;
+            if (trial.trainer == null) {
+                MLP model = new MLP(config.layerSizes(train.numFeatures(), numOutputs));
+                initialize(model, trial.seed);
+                Trainer trainer = new Trainer(model);
+                trainer.clearListeners();
+                // A keypress would stop whichever trial happens to read it
+                trainer.setStopOnKeypress(false);
+                trainer.addListener(new MetricsListener() {
+                    @Override
+                    public void onEpoch(TrainingMetrics epoch) {
+                        trial.record(epoch);
+                    }
+                });
+                // Validation on this worker, the pool already runs one trial per thread
+                trainer.setEvaluator(new Evaluator(null));
+                trial.optimizer = optimizer.get();
+                trainer.setOptimizer(trial.optimizer);
+                trainer.setL2Regularization(config.l2Lambda);
+                // The allocation-free paths keep the GC out of the way of concurrent trials
+                if (config.batchSize > 1) {
+                    trainer.setActivationCheckpointEvery(1);
+                } else {
+                    trainer.setCompiled(true);
+                }
+                trial.setModel(model);
+                trial.trainer = trainer;
+            } else {
+                trial.trainer.resume(trial.checkpoint);
+            }
+            DataPipeline pipeline = new DataPipeline(train);
+            pipeline.setBatchSize(config.batchSize);
+            pipeline.setShuffle(trial.seed);
+            trial.trainer.train(pipeline, config.learningRate, totalEpochs, validation.images, validation.labels,
+                    config.decay.enabled(), config.decay.start, config.decay.every);
+            MLP model = trial.model();
+            Optimizer update = trial.optimizer;
+            trial.checkpoint = new Checkpoint(trial.epochs(), trial.seed, update.getLearningRate(), Double.NaN, Double.NaN,
+                    model.layerSizes(), model.parameterData(), update.getClass().getName(), update.getState());
+        } catch (Exception | Error e) {
+            // Errors too (e.g. OutOfMemoryError, StackOverflowError): the other trials keep their results
+            trial.fail(e);
+        }
+        trial.addNanos(System.nanoTime() - start);
+    }
+
+    // Uniform weights in [-1, 1) and zero biases like Neuron, but from the trial's seed
+    private static void initialize(MLP model, long seed) {
+        Random random = new Random(seed);
+        int[] sizes = model.layerSizes();
+        double[] parameters = new double[model.parameterView().length];
+        int k = 0;
+        for (int l = 0; l + 1 < sizes.length; l++) {
+            for (int j = 0; j < sizes[l + 1]; j++) {
+                for (int i = 0; i < sizes[l]; i++) {
+                    parameters[k++] = random.nextDouble() * 2 - 1;
+                }
+                parameters[k++] = 0.0;
+            }
+        }
+        model.setParameterData(parameters);
+    }
+}
@@ -0,0 +1,17 @@
+package tuning;
+
+import java.util.List;
+
+/**
+ * Progress of a Sweep. Called on the thread that runs the sweep, after all trials of a rung have
+ * trained and before the worse ones are stopped.
+ */
+@FunctionalInterface
+public interface SweepListener {
+    /**
+     * @param rung Index of the successive halving rung, 0 for the first (the only one without halving).
+     * @param epochs Total epochs every trial of the rung has trained to.
+     * @param ranked Trials that finished the rung, best first (read-only).
+     */
+    void onRung(int rung, int epochs, List<SweepResults.Trial> ranked);
+}
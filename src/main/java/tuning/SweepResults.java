@@ -0,0 +1,169 @@
+package tuning;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+import core.MLP;
+import engine.Checkpoint;
+import engine.Optimizer;
+import engine.Trainer;
+import metrics.TrainingMetrics;
+import tuning.SearchSpace.Config;
+
+/**
+ * Trials of a finished Sweep, ranked: trials that survived more successive halving rungs first,
+ * then by average validation loss; failed trials last.
+ */
+public class SweepResults {
+    public enum Status { COMPLETED, STOPPED, FAILED }
+
+    /** One configuration of a sweep and how far it got. */
+    public static final class Trial {
+        public final int id;
+        public final Config config;
+        // Seed of the weight initialization and the shuffling
+        public final long seed;
+
+        private Status status = Status.COMPLETED;
+        private int epochs = 0;
+        private double trainingLoss = Double.NaN;
+        private double validationLoss = Double.NaN;
+        private double validationAccuracy = Double.NaN;
+        private long nanos = 0;
+        private String error = null;
+        private MLP model;
+        // Training state kept between rungs, dropped when the trial is done
+        Trainer trainer;
+        Optimizer optimizer;
+        Checkpoint checkpoint;
+
+        Trial(int id, Config config, long seed) {
+            this.id = id;
+            this.config = config;
+            this.seed = seed;
+        }
+
+        void record(TrainingMetrics epoch) {
+            epochs = epoch.epoch + 1;
+            trainingLoss = epoch.averageLoss();
+            validationLoss = epoch.averageValidationLoss();
+            validationAccuracy = epoch.validationAccuracy;
+        }
+        void fail(Throwable e) {
+            status = Status.FAILED;
+            error = e.toString();
+            finish();
+        }
+        void stop() {
+            status = Status.STOPPED;
+            finish();
+        }
+        void finish() {
+            trainer = null;
+            optimizer = null;
+            checkpoint = null;
+        }
+        void setModel(MLP model) {
+            this.model = model;
+        }
+        void addNanos(long nanos) {
+            this.nanos += nanos;
+        }
+
+        public Status status() {
+            return status;
+        }
+        public int epochs() {
+            return epochs;
+        }
+        public double trainingLoss() {
+            return trainingLoss;
+        }
+        // Average validation loss after the last trained epoch
+        public double validationLoss() {
+            return validationLoss;
+        }
+        public double validationAccuracy() {
+            return validationAccuracy;
+        }
+        public double seconds() {
+            return nanos / 1e9;
+        }
+        // Exception that ended a FAILED trial, null otherwise
+        public String error() {
+            return error;
+        }
+        // The trained model, e.g. to save the best one
+        public MLP model() {
+            return model;
+        }
+    }
+
+    // Surviving longer first, then lower validation loss (diverged NaN losses last)
+    static final Comparator<Trial> RANKING = Comparator
+            .comparing((Trial t) -> t.status == Status.FAILED)
+            .thenComparing(Comparator.comparingInt((Trial t) -> t.epochs).reversed())
+            .thenComparingDouble(t -> Double.isNaN(t.validationLoss) ? Double.POSITIVE_INFINITY : t.validationLoss);
+
+    private final List<Trial> ranked;
+
+    SweepResults(List<Trial> trials) {
+        List<Trial> sorted = new ArrayList<>(trials);
+        sorted.sort(RANKING);
+        this.ranked = Collections.unmodifiableList(sorted);
+    }
+
+    public List<Trial> ranked() {
+        return ranked;
+    }
+    public Trial best() {
+        return ranked.get(0);
+    }
+
+    // Ranked results as CSV with a header line
+    public void write(Path path) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            writer.write("rank,trial,status,epochs,trainingLoss,validationLoss,validationAccuracy,seconds,hiddenLayers,learningRate,decayStart,decayEvery,batchSize,l2Lambda,seed");
+            writer.newLine();
+            for (int i = 0; i < ranked.size(); i++) {
+                Trial t = ranked.get(i);
+                StringBuilder hidden = new StringBuilder();
+                for (int size : t.config.hiddenLayers) {
+                    if (hidden.length() > 0) hidden.append('-');
+                    hidden.append(size);
+                }
+                writer.write(String.format(Locale.ROOT, "%d,%d,%s,%d,%s,%s,%s,%.3f,%s,%s,%d,%d,%d,%s,%d",
+                        i + 1, t.id, t.status.toString().toLowerCase(Locale.ROOT), t.epochs, number(t.trainingLoss), number(t.validationLoss),
+                        number(t.validationAccuracy), t.seconds(), hidden, number(t.config.learningRate), t.config.decay.start,
+                        t.config.decay.every, t.config.batchSize, number(t.config.l2Lambda), t.seed));
+                writer.newLine();
+            }
+        }
+    }
+    // Missing values are empty
+    private static String number(double value) {
+        return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.10g", value);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder();
+        table.append(String.format("%4s %5s %-9s %6s %10s %8s %8s  %s%n", "rank", "trial", "status", "epochs", "val loss", "val acc", "time s", "config"));
+        for (int i = 0; i < ranked.size(); i++) {
+            Trial t = ranked.get(i);
+            table.append(String.format(Locale.ROOT, "%4d %5d %-9s %6d %10.6f %8.4f %8.1f  %s%n",
+                    i + 1, t.id, t.status, t.epochs, t.validationLoss, t.validationAccuracy, t.seconds(), t.config));
+            if (t.error != null) {
+                table.append("           ").append(t.error).append(System.lineSeparator());
+            }
+        }
+        return table.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+// The faster training paths must produce the loss and parameter gradients of the scalar Value graph
+class GradientEquivalenceTest {
+    private static final double TOLERANCE = 1e-12;
+    private static final int ROWS = 5;
+    private static final int[] MULTI_CLASS = {6, 8, 7, 4};
+    private static final int[] BINARY = {3, 5, 1};
+
+    @Test
+    void tensorMatchesValueMultiClass() {
+        checkTensor(MULTI_CLASS);
+    }
+
+    @Test
+    void tensorMatchesValueBinary() {
+        checkTensor(BINARY);
+    }
+
+    private static void checkTensor(int[] sizes) {
+        MLP model = model(sizes);
+        double[] x = inputs(sizes);
+        int[] labels = labels(sizes);
+        double expectedLoss = valueGradients(model, x, labels);
+        double[] expected = gradients(model);
+
+        // As in Trainer: forward on detached parameter tensors, gradients added back into the Values
+        List<Tensor> parameters = model.parameterTensors();
+        Tensor logits = model.logits(new Tensor(x, ROWS, sizes[0]), parameters);
+        Tensor loss = (logits.cols() == 1) ? logits.binaryCrossEntropy(toDouble(labels)) : logits.crossEntropy(labels);
+        loss.backward();
+        model.zeroGrad();
+        model.accumulateGrad(parameters);
+
+        assertEquals(expectedLoss, loss.item(), TOLERANCE);
+        assertArrayEquals(expected, gradients(model), TOLERANCE);
+    }
+
+    @Test
+    void compiledGraphMatchesValue() {
+        for (int[] sizes : new int[][]{MULTI_CLASS, BINARY}) {
+            MLP model = model(sizes);
+            double[] x = inputs(sizes);
+            int[] labels = labels(sizes);
+            double expectedLoss = valueGradients(model, x, labels);
+            double[] expected = gradients(model);
+
+            // One plan per row's label, each backward() adds its sample's gradient
+            model.zeroGrad();
+            double loss = 0.0;
+            for (int r = 0; r < ROWS; r++) {
+                int label = labels[r];
+                CompiledGraph plan = model.compile(logits -> loss(logits, label));
+                loss += plan.forward(x, r * sizes[0]);
+                plan.backward();
+            }
+            double[] actual = gradients(model);
+            for (int i = 0; i < actual.length; i++) {
+                actual[i] /= ROWS;
+            }
+
+            assertEquals(expectedLoss, loss / ROWS, TOLERANCE);
+            assertArrayEquals(expected, actual, TOLERANCE);
+        }
+    }
+
+    @Test
+    void plannedExecutorMatchesValue() {
+        for (int[] sizes : new int[][]{MULTI_CLASS, BINARY}) {
+            MLP model = model(sizes);
+            double[] x = inputs(sizes);
+            int[] labels = labels(sizes);
+            double expectedLoss = valueGradients(model, x, labels);
+            double[] expected = gradients(model);
+
+            // Every activation kept or every other one recomputed, on a full and on a partial batch
+            for (int checkpointEvery : new int[]{1, 2}) {
+                for (int planRows : new int[]{ROWS, ROWS + 3}) {
+                    PlannedExecutor executor = new PlannedExecutor(model, new MemoryPlan(sizes, planRows, checkpointEvery));
+                    double loss = executor.run(x, labels, ROWS, 1.0 / ROWS);
+                    model.zeroGrad();
+                    executor.accumulateGrad();
+
+                    assertEquals(expectedLoss, loss / ROWS, TOLERANCE);
+                    assertArrayEquals(expected, gradients(model), TOLERANCE);
+                }
+            }
+        }
+    }
+
+    // Seeded parameters and data, so failures are reproducible
+    private static MLP model(int[] sizes) {
+        MLP model = new MLP(sizes);
+        Random random = new Random(1);
+        double[] parameters = new double[model.parameterView().length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = random.nextDouble() * 2 - 1;
+        }
+        model.setParameterData(parameters);
+        return model;
+    }
+    // ROWS x numInputs, row-major
+    private static double[] inputs(int[] sizes) {
+        Random random = new Random(2);
+        double[] x = new double[ROWS * sizes[0]];
+        for (int i = 0; i < x.length; i++) {
+            x[i] = random.nextDouble() * 2 - 1;
+        }
+        return x;
+    }
+    private static int[] labels(int[] sizes) {
+        Random random = new Random(3);
+        int classes = Math.max(sizes[sizes.length - 1], 2);
+        int[] labels = new int[ROWS];
+        for (int r = 0; r < ROWS; r++) {
+            labels[r] = random.nextInt(classes);
+        }
+        return labels;
+    }
+
+    // Mean loss over the rows through one scalar Value graph per row, gradients left in the parameters
+    private static double valueGradients(MLP model, double[] x, int[] labels) {
+        int cols = x.length / labels.length;
+        List<Value> losses = new ArrayList<>();
+        for (int r = 0; r < labels.length; r++) {
+            List<Value> in = new ArrayList<>();
+            for (int j = 0; j < cols; j++) {
+                in.add(new Value(x[r * cols + j]));
+            }
+            losses.add(loss(model.logits(in), labels[r]));
+        }
+        Value loss = Value.sum(losses).mul(new Value(1.0 / labels.length));
+        model.zeroGrad();
+        loss.backward();
+        return loss.data;
+    }
+    private static Value loss(List<Value> logits, int label) {
+        return (logits.size() == 1) ? Value.binaryCrossEntropy(logits.get(0), label) : Value.crossEntropy(logits, label);
+    }
+
+    private static double[] gradients(MLP model) {
+        Value[] parameters = model.parameterView();
+        double[] grads = new double[parameters.length];
+        for (int i = 0; i < grads.length; i++) {
+            grads[i] = parameters[i].grad;
+        }
+        return grads;
+    }
+    private static double[] toDouble(int[] labels) {
+        double[] out = new double[labels.length];
+        for (int i = 0; i < labels.length; i++) {
+            out[i] = labels[i];
+        }
+        return out;
+    }
+}
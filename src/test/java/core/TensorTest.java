@@ -0,0 +1,41 @@
+package core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class TensorTest {
+    private static final Tensor LOGITS = new Tensor(new double[]{1, 2, 3, 4, 5, 6}, 2, 3);
+
+    @Test
+    void crossEntropyRejectsLabelsOutOfRange() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> LOGITS.crossEntropy(new int[]{0, 3}));
+        assertEquals("Target 3 out of range for 3 classes.", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> LOGITS.crossEntropy(new int[]{-1, 0}));
+        assertThrows(IllegalArgumentException.class, () -> LOGITS.crossEntropy(new int[]{0}));
+    }
+
+    @Test
+    void pickRejectsColumnsOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> LOGITS.pick(new int[]{3, 0}));
+        assertThrows(IllegalArgumentException.class, () -> LOGITS.pick(new int[]{0, 1, 2}));
+        assertEquals(5.0, LOGITS.pick(new int[]{0, 1}).data[1], 0.0);
+    }
+
+    @Test
+    void backwardHandlesDeepAndSharedGraphs() {
+        // Far deeper than the call stack allows for a recursive sort
+        Tensor x = new Tensor(new double[]{1, 2}, 1, 2);
+        Tensor y = x;
+        for (int i = 0; i < 100_000; i++) {
+            y = y.add(0.0);
+        }
+        // x reached along two paths is still one node, its gradient summed over both
+        Tensor loss = y.mul(x).sum();
+        loss.backward();
+        assertEquals(100_003, loss.graphSize());
+        assertEquals(2.0, x.grad[0], 0.0);
+        assertEquals(4.0, x.grad[1], 0.0);
+    }
+}
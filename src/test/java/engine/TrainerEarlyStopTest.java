@@ -0,0 +1,45 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import core.MLP;
+import metrics.InMemoryMetrics;
+import metrics.TrainingMetrics;
+
+class TrainerEarlyStopTest {
+    private static final double[][] X = {{0.1, 0.9}, {0.8, 0.2}, {0.5, 0.5}, {0.9, 0.7}};
+    private static final int[] Y = {0, 1, 1, 0};
+    // Validating on the flipped labels, fitting Y soon stops improving the validation loss
+    private static final int[] FLIPPED = {1, 0, 0, 1};
+
+    @Test
+    void patienceStopIsReportedOnTheLastEpoch() {
+        MLP model = new MLP(new int[]{2, 3, 1});
+        double[] initial = new double[model.parameterView().length];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = Math.sin(i + 1);
+        }
+        model.setParameterData(initial);
+        Trainer trainer = new Trainer(model);
+        trainer.clearListeners();
+        trainer.setStopOnKeypress(false);
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        trainer.addListener(metrics);
+        trainer.setOptimizer(new SGD(0.1));
+        trainer.setEarlyStopping(1);
+        trainer.train(X, Y, 0.1, 10, X, FLIPPED, false, 0, 0);
+
+        List<TrainingMetrics> epochs = metrics.epochs();
+        assertTrue(epochs.size() < 10, "training did not stop early");
+        for (int i = 0; i < epochs.size() - 1; i++) {
+            assertNull(epochs.get(i).earlyStop);
+        }
+        assertEquals(TrainingMetrics.EarlyStop.PATIENCE, epochs.get(epochs.size() - 1).earlyStop);
+    }
+}
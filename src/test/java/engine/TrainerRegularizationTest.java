@@ -0,0 +1,56 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+import core.MLP;
+
+class TrainerRegularizationTest {
+    private static final double[][] X = {{0.1, 0.9}, {0.8, 0.2}, {0.5, 0.5}, {0.9, 0.7}};
+    private static final int[] Y = {0, 1, 1, 0};
+
+    @Test
+    void optimizerWeightDecayReplacesTrainerL2() {
+        double[] defaultL2 = train(() -> new AdamW(0.01, 0.1), 1e-4);
+        double[] noL2 = train(() -> new AdamW(0.01, 0.1), 0.0);
+        assertArrayEquals(noL2, defaultL2, 0.0);
+    }
+
+    @Test
+    void trainerL2AppliesWithoutOptimizerDecay() {
+        double[] withL2 = train(() -> new SGD(0.01), 1e-2);
+        double[] noL2 = train(() -> new SGD(0.01), 0.0);
+        assertFalse(Arrays.equals(withL2, noL2));
+    }
+
+    @Test
+    void penaltyIsZeroWhenTheOptimizerDecays() {
+        Trainer trainer = new Trainer(new MLP(new int[]{2, 3, 1}));
+        assertTrue(trainer.getL2Penalty() > 0);
+        trainer.setOptimizer(new AdamW(0.01, 0.1));
+        assertEquals(0.0, trainer.getL2Penalty(), 0.0);
+    }
+
+    private static double[] train(Supplier<Optimizer> optimizer, double l2Lambda) {
+        MLP model = new MLP(new int[]{2, 3, 1});
+        double[] initial = new double[model.parameterView().length];
+        for (int i = 0; i < initial.length; i++) {
+            initial[i] = Math.sin(i + 1);
+        }
+        model.setParameterData(initial);
+        Trainer trainer = new Trainer(model);
+        trainer.clearListeners();
+        trainer.setStopOnKeypress(false);
+        trainer.setOptimizer(optimizer.get());
+        trainer.setL2Regularization(l2Lambda);
+        trainer.train(X, Y, 0.01, 3, null, null, false, 0, 0);
+        return model.parameterData();
+    }
+}
@@ -0,0 +1,51 @@
+package models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import core.MLP;
+import core.ModelFile;
+import data.DigitDataLoader;
+import data.DigitDataLoader.DataSet;
+import engine.Evaluator;
+
+// Reduced-precision inference snapshots of the saved digit model against its float64 accuracy
+class DigitRecognizerPrecisionTest {
+    private static final String MODEL_PATH = "src/main/java/models/DigitRecognizer_0.96438.model";
+
+    private static MLP model;
+    private static DataSet train;
+    private static DataSet test;
+    private static double reference;
+    private final Evaluator evaluator = new Evaluator();
+
+    @BeforeAll
+    static void load() throws Exception {
+        train = DigitDataLoader.load("/data/digits_train.csv");
+        test = DigitDataLoader.load("/data/digits_test.csv");
+        model = new MLP(new int[]{64, 64, 32, 10});
+        model.loadModel(MODEL_PATH);
+        reference = new Evaluator().evaluate(model.freeze(), test.images, test.labels).accuracy();
+        // loadModel only logs errors, a model left at its random initialization would pass trivially
+        assertTrue(reference > 0.95, "saved model not loaded, float64 accuracy " + reference);
+    }
+
+    @Test
+    void float32AccuracyWithinTolerance() {
+        double accuracy = evaluator.evaluate(model.freeze(ModelFile.DType.FLOAT32), test.images, test.labels).accuracy();
+        assertEquals(reference, accuracy, DigitRecognizer.FLOAT32_TOLERANCE);
+    }
+
+    @Test
+    void int8AccuracyWithinTolerance() {
+        double[][] calibration = Arrays.copyOf(train.images, DigitRecognizer.CALIBRATION_SAMPLES);
+        double accuracy = evaluator.evaluate(model.quantize(calibration), test.images, test.labels).accuracy();
+        assertTrue(accuracy >= reference - DigitRecognizer.INT8_MAX_DROP,
+                "int8 accuracy " + accuracy + " more than " + DigitRecognizer.INT8_MAX_DROP + " below float64 " + reference);
+    }
+}
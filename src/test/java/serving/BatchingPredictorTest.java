@@ -0,0 +1,50 @@
+package serving;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import core.InferenceModel;
+import core.MLP;
+
+class BatchingPredictorTest {
+    private static final InferenceModel MODEL = new MLP(new int[]{4, 8, 3}).freeze();
+
+    @Test
+    void batchesMatchSingleSamplePredictions() {
+        double[] input = {0.1, 0.2, 0.3, 0.4};
+        double[] expected = new double[3];
+        MODEL.predict(input, expected);
+        try (BatchingPredictor predictor = new BatchingPredictor(MODEL, 8, 1000)) {
+            assertArrayEquals(expected, predictor.predict(input), 0.0);
+        }
+    }
+
+    @Test
+    void closeFailsRequestsOfAHalfGatheredBatch() throws Exception {
+        // A batch of 8 with a 60 s budget: the dispatcher keeps waiting for more requests
+        BatchingPredictor predictor = new BatchingPredictor(MODEL, 8, TimeUnit.SECONDS.toMicros(60));
+        CompletableFuture<double[]> first = predictor.submit(new double[4]);
+        CompletableFuture<double[]> second = predictor.submit(new double[4]);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (predictor.metrics().queueDepth > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(0, predictor.metrics().queueDepth, "dispatcher did not take the requests");
+
+        predictor.close();
+
+        for (CompletableFuture<double[]> future : new CompletableFuture[]{first, second}) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+        assertThrows(IllegalStateException.class, () -> predictor.submit(new double[4]));
+    }
+}
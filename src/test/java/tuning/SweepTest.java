@@ -0,0 +1,46 @@
+package tuning;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import core.Value;
+import data.DigitDataLoader.DataSet;
+import engine.SGD;
+
+class SweepTest {
+    private static final DataSet DATA = new DataSet(
+            new double[][]{{0.1, 0.9}, {0.8, 0.2}, {0.5, 0.5}, {0.9, 0.7}, {0.3, 0.1}, {0.2, 0.6}},
+            new int[]{0, 1, 1, 0, 1, 0});
+
+    @Test
+    void anErrorFailsOnlyItsTrial() {
+        SearchSpace space = new SearchSpace();
+        space.setHiddenLayers(new int[]{3});
+        space.setLearningRates(0.01, 0.02, 0.03);
+        // The first optimizer handed out throws an Error on its first step
+        AtomicInteger created = new AtomicInteger();
+        Sweep sweep = new Sweep(DATA, DATA);
+        sweep.setEpochs(2);
+        sweep.setThreads(2);
+        sweep.setOptimizer(() -> created.getAndIncrement() == 0 ? new SGD(0.01) {
+            @Override
+            public void step(Value[] params) {
+                throw new StackOverflowError("trial failure");
+            }
+        } : new SGD(0.01));
+
+        SweepResults results = sweep.run(space.grid());
+
+        long failed = results.ranked().stream().filter(t -> t.status() == SweepResults.Status.FAILED).count();
+        assertEquals(1, failed);
+        SweepResults.Trial last = results.ranked().get(2);
+        assertEquals(SweepResults.Status.FAILED, last.status());
+        assertTrue(last.error().contains("StackOverflowError"), last.error());
+        assertEquals(SweepResults.Status.COMPLETED, results.best().status());
+        assertEquals(2, results.best().epochs());
+    }
+}